@@ -0,0 +1,80 @@
+/**
+ * 一个挖掘窗口处理完成后记录的检查点
+ *
+ * @author zhul
+ */
+public class Checkpoint {
+
+    private final String url;
+    private final long rangeStartScn;
+    private final long rangeEndScn;
+    private final long lastProcessedScn;
+    private final long restartScn;
+    private final int openTransactions;
+    private final long timestamp;
+
+    /**
+     * @param url              目标库
+     * @param rangeStartScn    本次运行的起始 scn
+     * @param rangeEndScn      本次运行的结束 scn
+     * @param lastProcessedScn 已完整处理的最后一个窗口的结束 scn
+     * @param restartScn       事务安全的重启点, 即仍未提交的最早事务的起始 scn, 没有未提交事务时等于 lastProcessedScn
+     * @param openTransactions 未提交的事务数
+     * @param timestamp        记录时间 (毫秒)
+     */
+    public Checkpoint(String url, long rangeStartScn, long rangeEndScn, long lastProcessedScn, long restartScn,
+                      int openTransactions, long timestamp) {
+        this.url = url;
+        this.rangeStartScn = rangeStartScn;
+        this.rangeEndScn = rangeEndScn;
+        this.lastProcessedScn = lastProcessedScn;
+        this.restartScn = restartScn;
+        this.openTransactions = openTransactions;
+        this.timestamp = timestamp;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public long getRangeStartScn() {
+        return rangeStartScn;
+    }
+
+    public long getRangeEndScn() {
+        return rangeEndScn;
+    }
+
+    public long getLastProcessedScn() {
+        return lastProcessedScn;
+    }
+
+    public long getRestartScn() {
+        return restartScn;
+    }
+
+    public int getOpenTransactions() {
+        return openTransactions;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * 是否属于同一个目标库的同一个 scn 范围
+     */
+    public boolean isSameRange(String url, long rangeStartScn, long rangeEndScn) {
+        return this.url.equals(url) && this.rangeStartScn == rangeStartScn && this.rangeEndScn == rangeEndScn;
+    }
+
+    public boolean isRangeCompleted() {
+        return lastProcessedScn >= rangeEndScn;
+    }
+
+    @Override
+    public String toString() {
+        return "Checkpoint{url=" + url + ", range=[" + rangeStartScn + ", " + rangeEndScn + "], lastProcessedScn="
+                + lastProcessedScn + ", restartScn=" + restartScn + ", openTransactions=" + openTransactions + "}";
+    }
+}
@@ -0,0 +1,193 @@
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 基于本地文件的检查点存储
+ *
+ * <p>
+ * 文件只追加写, 每行一个检查点, 行尾带 crc32, 进程在写入过程中退出时, 损坏的最后一行在读取时会被忽略.
+ * 为了降低 fsync 的开销, 每累计 syncEveryRecords 条记录或距上次 fsync 超过 syncIntervalMillis 时才 force 一次,
+ * 未 force 的记录在掉电时可能丢失, 代价只是多重做一个窗口.
+ * <p>
+ * 打开时会把文件压缩为每个 (url, scn 范围) 只保留最新一条记录.
+ *
+ * @author zhul
+ */
+public class CheckpointStore implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CheckpointStore.class);
+
+    private static final String VERSION = "v1";
+
+    private static final char SEPARATOR = '\t';
+
+    private final Path file;
+    private final int syncEveryRecords;
+    private final long syncIntervalMillis;
+    private final Map<String, Checkpoint> latest = new LinkedHashMap<>();
+
+    private FileChannel channel;
+    private int unsyncedRecords = 0;
+    private long lastSyncMillis = System.currentTimeMillis();
+
+    public CheckpointStore(Path file, int syncEveryRecords, long syncIntervalMillis) throws IOException {
+        this.file = file;
+        this.syncEveryRecords = syncEveryRecords;
+        this.syncIntervalMillis = syncIntervalMillis;
+        load();
+        compact();
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * 返回同一目标库同一 scn 范围的最新检查点, 没有时返回 null
+     */
+    public synchronized Checkpoint latest(String url, long rangeStartScn, long rangeEndScn) {
+        return latest.get(key(url, rangeStartScn, rangeEndScn));
+    }
+
+    public synchronized void append(Checkpoint checkpoint) throws IOException {
+        channel.write(ByteBuffer.wrap(encode(checkpoint).getBytes(StandardCharsets.UTF_8)));
+        latest.put(key(checkpoint.getUrl(), checkpoint.getRangeStartScn(), checkpoint.getRangeEndScn()), checkpoint);
+        unsyncedRecords++;
+        long now = System.currentTimeMillis();
+        if (unsyncedRecords >= syncEveryRecords || now - lastSyncMillis >= syncIntervalMillis) {
+            sync();
+        }
+    }
+
+    public synchronized void sync() throws IOException {
+        if (unsyncedRecords == 0) {
+            return;
+        }
+        channel.force(false);
+        LOGGER.debug("{} checkpoints synced to {}", unsyncedRecords, file);
+        unsyncedRecords = 0;
+        lastSyncMillis = System.currentTimeMillis();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            sync();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        int corrupted = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Checkpoint checkpoint = decode(line);
+                if (checkpoint == null) {
+                    corrupted++;
+                    continue;
+                }
+                latest.put(key(checkpoint.getUrl(), checkpoint.getRangeStartScn(), checkpoint.getRangeEndScn()), checkpoint);
+            }
+        }
+        if (corrupted > 0) {
+            LOGGER.warn("{} corrupted checkpoint records in {} were ignored", corrupted, file);
+        }
+        LOGGER.info("{} checkpoints loaded from {}", latest.size(), file);
+    }
+
+    private void compact() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Checkpoint checkpoint : latest.values()) {
+                out.write(ByteBuffer.wrap(encode(checkpoint).getBytes(StandardCharsets.UTF_8)));
+            }
+            out.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String key(String url, long rangeStartScn, long rangeEndScn) {
+        return url + SEPARATOR + rangeStartScn + SEPARATOR + rangeEndScn;
+    }
+
+    static String encode(Checkpoint checkpoint) {
+        String record = VERSION + SEPARATOR + checkpoint.getUrl()
+                + SEPARATOR + checkpoint.getRangeStartScn()
+                + SEPARATOR + checkpoint.getRangeEndScn()
+                + SEPARATOR + checkpoint.getLastProcessedScn()
+                + SEPARATOR + checkpoint.getRestartScn()
+                + SEPARATOR + checkpoint.getOpenTransactions()
+                + SEPARATOR + checkpoint.getTimestamp();
+        return record + SEPARATOR + crc(record) + '\n';
+    }
+
+    /**
+     * @return 行被截断, crc 不匹配或格式不对时返回 null
+     */
+    static Checkpoint decode(String line) {
+        int crcIndex = line.lastIndexOf(SEPARATOR);
+        if (crcIndex < 0) {
+            return null;
+        }
+        String record = line.substring(0, crcIndex);
+        if (!line.substring(crcIndex + 1).equals(String.valueOf(crc(record)))) {
+            return null;
+        }
+        List<String> fields = split(record);
+        if (fields.size() != 8 || !VERSION.equals(fields.get(0))) {
+            return null;
+        }
+        try {
+            return new Checkpoint(
+                    fields.get(1),
+                    Long.parseLong(fields.get(2)),
+                    Long.parseLong(fields.get(3)),
+                    Long.parseLong(fields.get(4)),
+                    Long.parseLong(fields.get(5)),
+                    Integer.parseInt(fields.get(6)),
+                    Long.parseLong(fields.get(7))
+            );
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static List<String> split(String record) {
+        List<String> fields = new ArrayList<>(8);
+        int from = 0;
+        int index;
+        while ((index = record.indexOf(SEPARATOR, from)) >= 0) {
+            fields.add(record.substring(from, index));
+            from = index + 1;
+        }
+        fields.add(record.substring(from));
+        return fields;
+    }
+
+    private static long crc(String record) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(record.getBytes(StandardCharsets.UTF_8));
+        return crc32.getValue();
+    }
+}
@@ -0,0 +1,326 @@
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * V$LOGMNR_CONTENTS 的分布统计: redo 来自哪些表, 哪些操作, 哪些 scn 区间
+ *
+ * <p>
+ * 查询只投影 SCN, OPERATION_CODE, SEG_OWNER, TABLE_NAME 和 XID (见 {@link util.SqlUtils#profileLogMinerContents(boolean)}),
+ * 不访问 SQL_REDO, LogMiner 不需要为每一行重建 SQL, 以接近全速的速度读取. redoBytes 为 true 时 (-Dlogminer.profile.bytes)
+ * 额外投影 LENGTHB(SQL_REDO), 统计字节数, 代价是每一行都要重建 SQL_REDO.
+ * 每一行只累加到以 int/long 为下标的计数器中, 不保存行, 内存占用只与表数和事务数有关.
+ * 表名到表编号的映射对连续出现的同一张表走快速路径, 不做 hash 查找.
+ * <p>
+ * 输出: 按行数 (和 SQL_REDO 字节数) 排序的前 N 张表, 各操作的行数, 以及 (startScn, endScn] 等分为若干桶的 redo 速率直方图,
+ * 第 i 个桶包含 (startScn + i * scnPerBucket, startScn + (i + 1) * scnPerBucket] 的行.
+ * 前 N 和桶数分别由 -Dlogminer.profile.top 和 -Dlogminer.profile.buckets 指定.
+ * <p>
+ * 非线程安全, 只在挖掘线程中使用.
+ *
+ * @author zhul
+ */
+public class ContentsProfiler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContentsProfiler.class);
+
+    private static final int INSERT = 1;
+    private static final int DELETE = 2;
+    private static final int UPDATE = 3;
+
+    private static final int HISTOGRAM_WIDTH = 50;
+
+    private final long startScn;
+    private final long scnPerBucket;
+    private final int topN;
+    private final boolean redoBytes;
+
+    private final long[] bucketRows;
+    private final long[] bucketBytes;
+    private final long[] operationRows = new long[256];
+
+    private final Map<String, Map<String, Integer>> tableIds = new HashMap<>();
+    private String[] tableNames = new String[64];
+    private long[] tableRows = new long[64];
+    private long[] tableBytes = new long[64];
+    /** 每张表 4 个计数: insert, update, delete, 其它 */
+    private long[] tableOperations = new long[64 * 4];
+    private int tableCount = 0;
+
+    private String lastOwner;
+    private String lastTable;
+    private int lastTableId = -1;
+
+    private final LongHashSet transactions = new LongHashSet();
+
+    private long rows = 0;
+    private long bytes = 0;
+    private long nanos = 0;
+
+    /**
+     * @param redoBytes 是否投影 LENGTHB(SQL_REDO) 统计字节数
+     */
+    public ContentsProfiler(long startScn, long endScn, int buckets, int topN, boolean redoBytes) {
+        this.startScn = startScn;
+        this.scnPerBucket = Math.max(1, (endScn - startScn + buckets - 1) / buckets);
+        this.topN = topN;
+        this.redoBytes = redoBytes;
+        this.bucketRows = new long[buckets];
+        this.bucketBytes = new long[buckets];
+    }
+
+    /**
+     * 读完整个结果集并累加
+     */
+    public void consume(ResultSet rs) throws SQLException {
+        long start = System.nanoTime();
+        while (rs.next()) {
+            long scn = rs.getLong(1);
+            int operation = rs.getInt(2);
+            String owner = rs.getString(3);
+            String table = rs.getString(4);
+            byte[] xid = rs.getBytes(5);
+            long redoBytes = this.redoBytes ? rs.getLong(6) : 0;
+
+            rows++;
+            bytes += redoBytes;
+            operationRows[operation & 0xFF]++;
+
+            // 整数除法向 0 取整, 先排除 scn <= startScn, 否则它们会落入第一个桶
+            long offset = scn - startScn - 1;
+            if (offset >= 0 && offset / scnPerBucket < bucketRows.length) {
+                int bucket = (int) (offset / scnPerBucket);
+                bucketRows[bucket]++;
+                bucketBytes[bucket] += redoBytes;
+            }
+
+            if (xid != null && xid.length == 8) {
+                transactions.add(toLong(xid));
+            }
+
+            if (table != null) {
+                int id = tableId(owner, table);
+                tableRows[id]++;
+                tableBytes[id] += redoBytes;
+                tableOperations[id * 4 + operationSlot(operation)]++;
+            }
+        }
+        nanos += System.nanoTime() - start;
+    }
+
+    private int tableId(String owner, String table) {
+        if (lastTableId >= 0 && table.equals(lastTable) && (owner == null ? lastOwner == null : owner.equals(lastOwner))) {
+            return lastTableId;
+        }
+        Map<String, Integer> tables = tableIds.computeIfAbsent(owner == null ? "" : owner, k -> new HashMap<>());
+        Integer id = tables.get(table);
+        if (id == null) {
+            id = addTable(owner == null ? table : owner + "." + table);
+            tables.put(table, id);
+        }
+        lastOwner = owner;
+        lastTable = table;
+        lastTableId = id;
+        return id;
+    }
+
+    private int addTable(String name) {
+        if (tableCount == tableNames.length) {
+            int capacity = tableCount * 2;
+            tableNames = Arrays.copyOf(tableNames, capacity);
+            tableRows = Arrays.copyOf(tableRows, capacity);
+            tableBytes = Arrays.copyOf(tableBytes, capacity);
+            tableOperations = Arrays.copyOf(tableOperations, capacity * 4);
+        }
+        tableNames[tableCount] = name;
+        return tableCount++;
+    }
+
+    private static int operationSlot(int operation) {
+        switch (operation) {
+            case INSERT:
+                return 0;
+            case UPDATE:
+                return 1;
+            case DELETE:
+                return 2;
+            default:
+                return 3;
+        }
+    }
+
+    /**
+     * XID 是 8 字节的 RAW (USN, SLOT, SQN), 可以直接作为 long 使用
+     */
+    private static long toLong(byte[] xid) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (xid[i] & 0xFF);
+        }
+        return value;
+    }
+
+    public boolean isRedoBytes() {
+        return redoBytes;
+    }
+
+    public void print() {
+        double seconds = nanos / 1e9;
+        LOGGER.info("========== Contents profile ==========");
+        LOGGER.info("rows: {}, SQL_REDO bytes: {}, tables: {}, transactions: {}, fetch: {} rows/s",
+                rows, redoBytes ? String.valueOf(bytes) : "-", tableCount, transactions.size(),
+                String.format("%.0f", seconds <= 0 ? 0 : rows / seconds));
+
+        StringBuilder operations = new StringBuilder();
+        for (int op = 0; op < operationRows.length; op++) {
+            if (operationRows[op] > 0) {
+                operations.append(operations.length() == 0 ? "" : ", ").append(op).append('=').append(operationRows[op]);
+            }
+        }
+        LOGGER.info("rows by OPERATION_CODE: {}", operations);
+
+        printTopTables("rows", tableRows);
+        if (redoBytes) {
+            printTopTables("bytes", tableBytes);
+        }
+        printHistogram();
+    }
+
+    /**
+     * 按 values 从大到小排序的前 N 张表的编号, 相同时先出现的表在前
+     */
+    private Integer[] topTableIds(long[] values) {
+        Integer[] ids = new Integer[tableCount];
+        for (int i = 0; i < tableCount; i++) {
+            ids[i] = i;
+        }
+        Arrays.sort(ids, (a, b) -> Long.compare(values[b], values[a]));
+        return Arrays.copyOf(ids, Math.min(topN, tableCount));
+    }
+
+    List<String> getTopTables(boolean byBytes) {
+        List<String> names = new ArrayList<>();
+        for (int id : topTableIds(byBytes ? tableBytes : tableRows)) {
+            names.add(tableNames[id]);
+        }
+        return names;
+    }
+
+    long[] getBucketRows() {
+        return bucketRows.clone();
+    }
+
+    long[] getBucketBytes() {
+        return bucketBytes.clone();
+    }
+
+    long getRows() {
+        return rows;
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+
+    int getTransactionCount() {
+        return transactions.size();
+    }
+
+    private void printTopTables(String orderBy, long[] values) {
+        Integer[] ids = topTableIds(values);
+        LOGGER.info("Top {} tables by {}:", ids.length, orderBy);
+        LOGGER.info(String.format("%-50s %12s %7s %14s %7s %10s %10s %10s %10s",
+                "table", "rows", "rows%", "bytes", "bytes%", "insert", "update", "delete", "other"));
+        for (int id : ids) {
+            LOGGER.info(String.format("%-50s %12d %6.1f%% %14d %6.1f%% %10d %10d %10d %10d",
+                    tableNames[id], tableRows[id], percent(tableRows[id], rows), tableBytes[id], percent(tableBytes[id], bytes),
+                    tableOperations[id * 4], tableOperations[id * 4 + 1], tableOperations[id * 4 + 2], tableOperations[id * 4 + 3]));
+        }
+    }
+
+    private void printHistogram() {
+        // 不统计字节数时按行数画直方图
+        long[] barValues = redoBytes ? bucketBytes : bucketRows;
+        long maxValue = 1;
+        for (long value : barValues) {
+            maxValue = Math.max(maxValue, value);
+        }
+        LOGGER.info("Redo rate over scn ({} scn per bucket):", scnPerBucket);
+        LOGGER.info(String.format("%14s %12s %14s %10s", "from scn", "rows", "bytes", "bytes/scn"));
+        char[] bar = new char[HISTOGRAM_WIDTH];
+        for (int i = 0; i < bucketRows.length; i++) {
+            int width = (int) (barValues[i] * HISTOGRAM_WIDTH / maxValue);
+            Arrays.fill(bar, 0, width, '#');
+            LOGGER.info(String.format("%14d %12d %14d %10.1f %s",
+                    startScn + i * scnPerBucket, bucketRows[i], bucketBytes[i], (double) bucketBytes[i] / scnPerBucket,
+                    new String(bar, 0, width)));
+        }
+    }
+
+    private static double percent(long value, long total) {
+        return total == 0 ? 0 : value * 100.0 / total;
+    }
+
+    /**
+     * 开放寻址的 long 集合, 只用来统计不同的事务数
+     */
+    static class LongHashSet {
+
+        private long[] keys = new long[1024];
+        private boolean hasZero = false;
+        private int size = 0;
+
+        void add(long key) {
+            if (key == 0) {
+                if (!hasZero) {
+                    hasZero = true;
+                    size++;
+                }
+                return;
+            }
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (keys[i] != 0) {
+                if (keys[i] == key) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            if (++size * 2 > keys.length) {
+                resize();
+            }
+        }
+
+        private void resize() {
+            long[] old = keys;
+            keys = new long[old.length * 2];
+            int mask = keys.length - 1;
+            for (long key : old) {
+                if (key != 0) {
+                    int i = mix(key) & mask;
+                    while (keys[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = key;
+                }
+            }
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 一个挖掘周期 (一个 scn 窗口) 的结果, 包括各阶段耗时以及是否超时/失败
+ *
+ * @author zhul
+ */
+public class CycleResult {
+
+    public enum Status {
+        OK,
+        TIMEOUT,
+        FAILED
+    }
+
+    private final long startScn;
+    private final long endScn;
+    private final Map<MiningPhase, Duration> durations = new EnumMap<>(MiningPhase.class);
+    private long minedEndScn;
+    private int logFileCount;
+    private long pgaBytes = -1;
+    private long pgaMaxBytes = -1;
+    private long logFileBytes = -1;
+    private Status status = Status.OK;
+    private MiningPhase failedPhase;
+    private String message;
+
+    public CycleResult(long startScn, long endScn) {
+        this.startScn = startScn;
+        this.endScn = endScn;
+        this.minedEndScn = endScn;
+    }
+
+    public void recordDuration(MiningPhase phase, Duration duration) {
+        durations.merge(phase, duration, Duration::plus);
+    }
+
+    public void recordFailure(MiningPhase phase, Exception e) {
+        this.status = e instanceof PhaseTimeoutException ? Status.TIMEOUT : Status.FAILED;
+        this.failedPhase = phase;
+        this.message = e.getMessage();
+    }
+
+    /**
+     * 日志文件数被限制时, 实际挖掘的 endScn 会小于请求的 endScn
+     */
+    public void setMinedEndScn(long minedEndScn) {
+        this.minedEndScn = minedEndScn;
+    }
+
+    /**
+     * START_LOGMNR 之后挖掘会话的 PGA 大小
+     */
+    public void setPgaBytes(long pgaBytes) {
+        this.pgaBytes = pgaBytes;
+    }
+
+    /**
+     * 查询结束后挖掘会话的 PGA 峰值
+     */
+    public void setPgaMaxBytes(long pgaMaxBytes) {
+        this.pgaMaxBytes = pgaMaxBytes;
+    }
+
+    /**
+     * 与挖掘窗口 [startScn, minedEndScn] 重叠的日志文件 (包括在线日志) 的总字节数, 未知时为 -1
+     */
+    public void setLogFileBytes(long logFileBytes) {
+        this.logFileBytes = logFileBytes;
+    }
+
+    public void setLogFileCount(int logFileCount) {
+        this.logFileCount = logFileCount;
+    }
+
+    public long getStartScn() {
+        return startScn;
+    }
+
+    public long getEndScn() {
+        return endScn;
+    }
+
+    public long getMinedEndScn() {
+        return minedEndScn;
+    }
+
+    public long getPgaBytes() {
+        return pgaBytes;
+    }
+
+    public long getPgaMaxBytes() {
+        return pgaMaxBytes;
+    }
+
+    public long getLogFileBytes() {
+        return logFileBytes;
+    }
+
+    /**
+     * 每秒挖掘的 scn 数, 不包括数据字典的构建时间
+     */
+    public double getScnPerSecond() {
+        long nanos = getTotalDuration().minus(getDuration(MiningPhase.BUILD_DICTIONARY)).toNanos();
+        return nanos <= 0 ? 0 : (minedEndScn - startScn) * 1e9 / nanos;
+    }
+
+    public Map<MiningPhase, Duration> getDurations() {
+        return Collections.unmodifiableMap(durations);
+    }
+
+    public Duration getDuration(MiningPhase phase) {
+        return durations.getOrDefault(phase, Duration.ZERO);
+    }
+
+    public Duration getTotalDuration() {
+        Duration total = Duration.ZERO;
+        for (Duration duration : durations.values()) {
+            total = total.plus(duration);
+        }
+        return total;
+    }
+
+    public int getLogFileCount() {
+        return logFileCount;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isOk() {
+        return status == Status.OK;
+    }
+
+    public MiningPhase getFailedPhase() {
+        return failedPhase;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "CycleResult{startScn=" + startScn + ", endScn=" + endScn
+                + (minedEndScn == endScn ? "" : ", minedEndScn=" + minedEndScn) + ", logFiles=" + logFileCount
+                + ", status=" + status + (failedPhase == null ? "" : ", failedPhase=" + failedPhase + ", message=" + message)
+                + ", durations=" + durations + "}";
+    }
+}
@@ -0,0 +1,143 @@
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 守护进程模式下的指标, 以 Prometheus 文本格式输出
+ *
+ * <p>
+ * 各阶段耗时记录为直方图 (logminer_phase_duration_seconds), 另外记录作业数, 挖掘的 scn 数/行数,
+ * 最近一个作业的吞吐量, 以及挖掘进度相对于数据库当前 scn 的延迟. 更新在挖掘线程中进行, 读取在 HTTP 线程中进行.
+ *
+ * @author zhul
+ */
+public class DaemonMetrics {
+
+    private static final double[] BUCKETS = {0.01, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120, 300, 600};
+
+    private final Map<MiningPhase, Histogram> phaseDurations = new EnumMap<>(MiningPhase.class);
+    private final Map<CycleResult.Status, LongAdder> jobs = new EnumMap<>(CycleResult.Status.class);
+    private final LongAdder minedScn = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final AtomicLong queuedJobs = new AtomicLong();
+    private final long startedMillis = System.currentTimeMillis();
+
+    private volatile double lastScnPerSecond = 0;
+    private volatile long lastMinedEndScn = -1;
+    private volatile long lagScn = -1;
+    private volatile long lastLogFiles = 0;
+    private volatile long lastPgaBytes = -1;
+    private volatile long lastJobEndMillis = 0;
+
+    public DaemonMetrics() {
+        for (MiningPhase phase : MiningPhase.values()) {
+            phaseDurations.put(phase, new Histogram());
+        }
+        for (CycleResult.Status status : CycleResult.Status.values()) {
+            jobs.put(status, new LongAdder());
+        }
+    }
+
+    public void recordCycle(CycleResult result) {
+        result.getDurations().forEach((phase, duration) -> phaseDurations.get(phase).observe(duration.toNanos() / 1e9));
+        jobs.get(result.getStatus()).increment();
+        if (result.isOk()) {
+            minedScn.add(result.getMinedEndScn() - result.getStartScn());
+            lastScnPerSecond = result.getScnPerSecond();
+            lastMinedEndScn = result.getMinedEndScn();
+            lastLogFiles = result.getLogFileCount();
+            lastPgaBytes = result.getPgaBytes();
+        }
+        lastJobEndMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * @param currentScn 作业完成后数据库的当前 scn, 可能来自 {@link ScnProbe} 的缓存
+     */
+    public void recordCurrentScn(long currentScn) {
+        if (lastMinedEndScn >= 0) {
+            lagScn = Math.max(0, currentScn - lastMinedEndScn);
+        }
+    }
+
+    public void incrementRows() {
+        rows.increment();
+    }
+
+    public void jobQueued() {
+        queuedJobs.incrementAndGet();
+    }
+
+    public void jobDequeued() {
+        queuedJobs.decrementAndGet();
+    }
+
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        out.append("# HELP logminer_phase_duration_seconds Duration of each mining phase.\n");
+        out.append("# TYPE logminer_phase_duration_seconds histogram\n");
+        phaseDurations.forEach((phase, histogram) -> histogram.write(out, phase.getKey()));
+
+        out.append("# HELP logminer_jobs_total Mining jobs completed by status.\n");
+        out.append("# TYPE logminer_jobs_total counter\n");
+        jobs.forEach((status, count) -> out.append("logminer_jobs_total{status=\"")
+                .append(status.name().toLowerCase()).append("\"} ").append(count.sum()).append('\n'));
+
+        counter(out, "logminer_mined_scn_total", "Scn mined by successful jobs.", minedScn.sum());
+        counter(out, "logminer_rows_total", "Rows read from V$LOGMNR_CONTENTS.", rows.sum());
+        gauge(out, "logminer_jobs_queued", "Jobs waiting to be mined.", queuedJobs.get());
+        gauge(out, "logminer_throughput_scn_per_second", "Throughput of the last successful job.", lastScnPerSecond);
+        gauge(out, "logminer_last_mined_scn", "End scn of the last successful job.", lastMinedEndScn);
+        gauge(out, "logminer_lag_scn", "Current database scn minus the last mined scn.", lagScn);
+        gauge(out, "logminer_log_files", "Log files added by the last successful job.", lastLogFiles);
+        gauge(out, "logminer_session_pga_bytes", "Session PGA after START_LOGMNR in the last successful job.", lastPgaBytes);
+        gauge(out, "logminer_last_job_timestamp_seconds", "Time the last job finished.", lastJobEndMillis / 1000.0);
+        gauge(out, "logminer_uptime_seconds", "Time since the daemon started.",
+                (System.currentTimeMillis() - startedMillis) / 1000.0);
+        return out.toString();
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, double value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * 固定分桶的直方图, 只在挖掘线程中写入, 输出时加锁保证各个桶一致
+     */
+    private static class Histogram {
+
+        private final long[] counts = new long[BUCKETS.length];
+        private long count = 0;
+        private double sum = 0;
+
+        synchronized void observe(double seconds) {
+            for (int i = 0; i < BUCKETS.length; i++) {
+                if (seconds <= BUCKETS[i]) {
+                    counts[i]++;
+                }
+            }
+            count++;
+            sum += seconds;
+        }
+
+        synchronized void write(StringBuilder out, String phase) {
+            for (int i = 0; i < BUCKETS.length; i++) {
+                out.append("logminer_phase_duration_seconds_bucket{phase=\"").append(phase)
+                        .append("\",le=\"").append(BUCKETS[i]).append("\"} ").append(counts[i]).append('\n');
+            }
+            out.append("logminer_phase_duration_seconds_bucket{phase=\"").append(phase)
+                    .append("\",le=\"+Inf\"} ").append(count).append('\n');
+            out.append("logminer_phase_duration_seconds_sum{phase=\"").append(phase).append("\"} ").append(sum).append('\n');
+            out.append("logminer_phase_duration_seconds_count{phase=\"").append(phase).append("\"} ").append(count).append('\n');
+        }
+    }
+}
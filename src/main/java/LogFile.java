@@ -11,6 +11,7 @@ public class LogFile {
     private final long firstScn;
     private final long nextScn;
     private final Long sequence;
+    private final int thread;
     private final boolean current;
     private final Type type;
 
@@ -20,11 +21,12 @@ public class LogFile {
      * @param fileName the file name
      * @param firstScn the first system change number in the log
      * @param nextScn the first system change number in the following log
-     * @param sequence the unique log sequence number
+     * @param sequence the log sequence number, unique within the redo thread
+     * @param thread the redo thread number
      * @param type the log type
      */
-    public LogFile(String fileName, long firstScn, long nextScn, Long sequence, Type type) {
-        this(fileName, firstScn, nextScn, sequence, type, false);
+    public LogFile(String fileName, long firstScn, long nextScn, Long sequence, int thread, Type type) {
+        this(fileName, firstScn, nextScn, sequence, thread, type, false);
     }
 
     /**
@@ -33,15 +35,17 @@ public class LogFile {
      * @param fileName the file name
      * @param firstScn the first system change number in the log
      * @param nextScn the first system change number in the following log
-     * @param sequence the unique log sequence number
+     * @param sequence the log sequence number, unique within the redo thread
+     * @param thread the redo thread number
      * @param type the type of archive log
      * @param current whether the log file is the current one
      */
-    public LogFile(String fileName, long firstScn, long nextScn, Long sequence, Type type, boolean current) {
+    public LogFile(String fileName, long firstScn, long nextScn, Long sequence, int thread, Type type, boolean current) {
         this.fileName = fileName;
         this.firstScn = firstScn;
         this.nextScn = nextScn;
         this.sequence = sequence;
+        this.thread = thread;
         this.current = current;
         this.type = type;
     }
@@ -62,6 +66,13 @@ public class LogFile {
         return sequence;
     }
 
+    /**
+     * Returns the redo thread (RAC instance) that generated this log, sequences are only unique per thread.
+     */
+    public int getThread() {
+        return thread;
+    }
+
     /**
      * Returns whether this log file instance is considered the current online redo log record.
      */
@@ -75,7 +86,7 @@ public class LogFile {
 
     @Override
     public int hashCode() {
-        return Objects.hash(sequence);
+        return Objects.hash(thread, sequence);
     }
 
     @Override
@@ -87,6 +98,6 @@ public class LogFile {
             return false;
         }
         final LogFile other = (LogFile) obj;
-        return Objects.equals(sequence, other.sequence);
+        return thread == other.thread && Objects.equals(sequence, other.sequence);
     }
 }
@@ -0,0 +1,258 @@
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.SqlUtils;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * 归档/在线日志文件的内存索引
+ *
+ * <p>
+ * 归档日志按 THREAD# 分组, 每个 thread 内按 SEQUENCE# 和 FIRST_CHANGE# 建立索引 (RAC 下每个实例有独立的 sequence 空间),
+ * 每次刷新只加载各 thread 中 SEQUENCE# 大于已加载最大值的新归档日志, 避免每个窗口都重新扫描整个 V$ARCHIVED_LOG.
+ * 在线日志数量很少且状态随时变化, 每次刷新都重新查询.
+ * <p>
+ * 当请求的起始 scn 比已加载的下界更早时, 会从该 scn 开始重新全量加载一次; 更晚时, NEXT_CHANGE# 不大于它的归档日志被移出索引,
+ * 索引大小不随运行时间 (例如守护进程) 增长. 每次刷新还会检查已加载的归档日志是否已被删除 (例如 RMAN 删除后 STATUS 变为 'D')
+ * 或超出了保留时长, 这些日志被移出索引, 不会交给 ADD_LOGFILE.
+ *
+ * @author zhul
+ */
+public class LogFileCatalog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogFileCatalog.class);
+
+    private static final String CURRENT = "CURRENT";
+
+    private final Duration archiveLogRetention;
+    private final boolean archiveLogOnlyMode;
+    private final String archiveDestinationName;
+
+    private final Map<Integer, ThreadIndex> threads = new TreeMap<>();
+    private final List<LogFile> onlineLogFiles = new ArrayList<>();
+
+    private long loadedFromScn = Long.MAX_VALUE;
+    private Duration lastRefreshDuration = Duration.ZERO;
+
+    public LogFileCatalog(Duration archiveLogRetention, boolean archiveLogOnlyMode, String archiveDestinationName) {
+        this.archiveLogRetention = archiveLogRetention;
+        this.archiveLogOnlyMode = archiveLogOnlyMode;
+        this.archiveDestinationName = archiveDestinationName;
+    }
+
+    /**
+     * 刷新索引, 保证其包含 NEXT_CHANGE# 大于 offsetScn 的所有归档日志以及当前的在线日志
+     */
+    public synchronized void refresh(OracleConnection connection, long offsetScn) throws SQLException {
+        Instant start = Instant.now();
+        int evicted = 0;
+        if (offsetScn < loadedFromScn) {
+            LOGGER.info("Loading archive log catalog from scn {}", offsetScn);
+            threads.clear();
+            loadedFromScn = offsetScn;
+        } else if (offsetScn > loadedFromScn) {
+            for (ThreadIndex index : threads.values()) {
+                evicted += index.evictBefore(offsetScn);
+            }
+            loadedFromScn = offsetScn;
+        }
+        evicted += removeUnavailableArchivedLogs(connection);
+        int added = loadArchivedLogs(connection);
+        if (!archiveLogOnlyMode) {
+            loadOnlineLogs(connection);
+        }
+        lastRefreshDuration = Duration.between(start, Instant.now());
+        LOGGER.info(
+                "Refreshing log file catalog cost {}, {} new and {} evicted archived logs, {} archived logs and {} online logs indexed",
+                lastRefreshDuration, added, evicted, archivedLogCount(), onlineLogFiles.size()
+        );
+    }
+
+    private int loadArchivedLogs(OracleConnection connection) throws SQLException {
+        final int[] added = {0};
+        final Map<Integer, Long> lastSequences = new TreeMap<>();
+        threads.forEach((thread, index) -> lastSequences.put(thread, index.lastSequence));
+        String query = SqlUtils.archivedLogsQuery(lastSequences, loadedFromScn, archiveLogRetention, archiveDestinationName);
+        connection.query(query, rs -> {
+            while (rs.next()) {
+                String fileName = rs.getString(1);
+                long firstScn = rs.getLong(2);
+                long nextScn = rs.getLong(3);
+                if (rs.wasNull()) {
+                    nextScn = Long.MAX_VALUE;
+                }
+                long sequence = rs.getLong(4);
+                int thread = rs.getInt(5);
+                LogFile logFile = new LogFile(fileName, firstScn, nextScn, sequence, thread, LogFile.Type.ARCHIVE);
+                LOGGER.trace("Archive log {} with SCN range {} to {} thread {} sequence {} indexed.", fileName, firstScn, nextScn, thread, sequence);
+                threads.computeIfAbsent(thread, t -> new ThreadIndex()).add(logFile);
+                added[0]++;
+            }
+        });
+        return added[0];
+    }
+
+    private int removeUnavailableArchivedLogs(OracleConnection connection) throws SQLException {
+        final Map<Integer, Long> lastSequences = new TreeMap<>();
+        threads.forEach((thread, index) -> {
+            if (!index.bySequence.isEmpty()) {
+                lastSequences.put(thread, index.lastSequence);
+            }
+        });
+        if (lastSequences.isEmpty()) {
+            return 0;
+        }
+        final int[] removed = {0};
+        String query = SqlUtils.unavailableArchivedLogsQuery(lastSequences, loadedFromScn, archiveLogRetention, archiveDestinationName);
+        connection.query(query, rs -> {
+            while (rs.next()) {
+                ThreadIndex index = threads.get(rs.getInt(1));
+                LogFile logFile = index == null ? null : index.remove(rs.getLong(2));
+                if (logFile != null) {
+                    LOGGER.info("Archive log {} thread {} sequence {} is no longer available, removed from catalog",
+                            logFile.getFileName(), logFile.getThread(), logFile.getSequence());
+                    removed[0]++;
+                }
+            }
+        });
+        return removed[0];
+    }
+
+    private void loadOnlineLogs(OracleConnection connection) throws SQLException {
+        onlineLogFiles.clear();
+        connection.query(SqlUtils.onlineLogsQuery(), rs -> {
+            while (rs.next()) {
+                String fileName = rs.getString(1);
+                long firstScn = rs.getLong(2);
+                long nextScn = rs.getLong(3);
+                if (rs.wasNull()) {
+                    nextScn = Long.MAX_VALUE;
+                }
+                String status = rs.getString(4);
+                long sequence = rs.getLong(5);
+                int thread = rs.getInt(6);
+                ThreadIndex index = threads.get(thread);
+                LogFile archived = index == null ? null : index.bySequence.get(sequence);
+                if (archived != null && archived.getFirstScn() == firstScn) {
+                    // 已经有归档副本, 以归档日志为准
+                    continue;
+                }
+                onlineLogFiles.add(new LogFile(fileName, firstScn, nextScn, sequence, thread, LogFile.Type.REDO, CURRENT.equalsIgnoreCase(status)));
+            }
+        });
+    }
+
+    /**
+     * 返回 scn 区间 [startScn, endScn] 需要挖掘的日志文件, 归档日志在前, 在线日志在后
+     */
+    public synchronized List<LogFile> getLogFiles(long startScn, long endScn) {
+        final List<LogFile> archivedLogFiles = new ArrayList<>();
+        for (ThreadIndex index : threads.values()) {
+            index.collect(startScn, endScn, archivedLogFiles);
+        }
+
+        final List<LogFile> onlineLogs = new ArrayList<>();
+        for (LogFile logFile : onlineLogFiles) {
+            if (logFile.getFirstScn() > endScn && !logFile.isCurrent()) {
+                continue;
+            }
+            if (logFile.isCurrent() || logFile.getNextScn() >= startScn) {
+                LOGGER.trace("Online redo log {} with SCN range {} to {} thread {} sequence {} to be added.",
+                        logFile.getFileName(), logFile.getFirstScn(), logFile.getNextScn(), logFile.getThread(), logFile.getSequence());
+                onlineLogs.add(logFile);
+            }
+        }
+
+        // DBZ-3563
+        // To avoid duplicate log files (ORA-01289 cannot add duplicate logfile)
+        // Remove the archive log which has the same thread and sequence number.
+        for (LogFile redoLog : onlineLogs) {
+            archivedLogFiles.removeIf(f -> {
+                if (f.equals(redoLog)) {
+                    LOGGER.trace("Removing archive log {} with duplicate thread {} sequence {} to {}",
+                            f.getFileName(), f.getThread(), f.getSequence(), redoLog.getFileName());
+                    return true;
+                }
+                return false;
+            });
+        }
+
+        final List<LogFile> logFiles = new ArrayList<>(archivedLogFiles.size() + onlineLogs.size());
+        logFiles.addAll(archivedLogFiles);
+        logFiles.addAll(onlineLogs);
+        return logFiles;
+    }
+
+    public synchronized Duration getLastRefreshDuration() {
+        return lastRefreshDuration;
+    }
+
+    private int archivedLogCount() {
+        int count = 0;
+        for (ThreadIndex index : threads.values()) {
+            count += index.bySequence.size();
+        }
+        return count;
+    }
+
+    /**
+     * 单个 redo thread 的归档日志索引, 同一个 thread 内的日志 scn 区间首尾相接, 互不重叠
+     */
+    private static class ThreadIndex {
+
+        private final NavigableMap<Long, LogFile> bySequence = new TreeMap<>();
+        private final NavigableMap<Long, LogFile> byFirstScn = new TreeMap<>();
+        private long lastSequence = 0;
+
+        void add(LogFile logFile) {
+            bySequence.put(logFile.getSequence(), logFile);
+            byFirstScn.put(logFile.getFirstScn(), logFile);
+            lastSequence = Math.max(lastSequence, logFile.getSequence());
+        }
+
+        LogFile remove(long sequence) {
+            LogFile logFile = bySequence.remove(sequence);
+            if (logFile != null) {
+                byFirstScn.remove(logFile.getFirstScn(), logFile);
+            }
+            return logFile;
+        }
+
+        /**
+         * 移除 NEXT_CHANGE# 不大于 scn 的日志, lastSequence 保持不变, 增量加载不会重新加载它们
+         */
+        int evictBefore(long scn) {
+            int evicted = 0;
+            Iterator<LogFile> iterator = byFirstScn.headMap(scn, true).values().iterator();
+            while (iterator.hasNext()) {
+                LogFile logFile = iterator.next();
+                if (logFile.getNextScn() <= scn) {
+                    iterator.remove();
+                    bySequence.remove(logFile.getSequence(), logFile);
+                    evicted++;
+                }
+            }
+            return evicted;
+        }
+
+        void collect(long startScn, long endScn, List<LogFile> result) {
+            Long from = byFirstScn.floorKey(startScn);
+            NavigableMap<Long, LogFile> candidates = from == null
+                    ? byFirstScn.headMap(endScn, true)
+                    : byFirstScn.subMap(from, true, Math.max(from, endScn), true);
+            for (LogFile logFile : candidates.values()) {
+                if (logFile.getNextScn() > startScn) {
+                    result.add(logFile);
+                }
+            }
+        }
+    }
+}
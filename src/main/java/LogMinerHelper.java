@@ -7,9 +7,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.text.DecimalFormat;
-import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
@@ -18,21 +17,30 @@ import java.util.stream.Collectors;
  */
 public class LogMinerHelper {
 
-    private static final String CURRENT = "CURRENT";
-
     private static final Logger LOGGER = LoggerFactory.getLogger(LogMinerHelper.class);
 
     public static void removeLogFilesFromMining(OracleConnection conn) throws SQLException {
+        removeLogFilesFromMining(conn, getLogFilesInMiningSession(conn));
+    }
+
+    /**
+     * V$LOGMNR_LOGS 是会话级视图, 只能在挖掘连接上查询
+     */
+    private static Set<String> getLogFilesInMiningSession(OracleConnection conn) throws SQLException {
         try (PreparedStatement ps = conn.connection().prepareStatement("SELECT FILENAME AS NAME FROM V$LOGMNR_LOGS");
              ResultSet result = ps.executeQuery()) {
             Set<String> files = new LinkedHashSet<>();
             while (result.next()) {
                 files.add(result.getString(1));
             }
-            for (String fileName : files) {
-                executeCallableStatement(conn, SqlUtils.deleteLogFileStatement(fileName));
-                LOGGER.info("File {} was removed from mining", fileName);
-            }
+            return files;
+        }
+    }
+
+    private static void removeLogFilesFromMining(OracleConnection conn, Set<String> files) throws SQLException {
+        for (String fileName : files) {
+            executeCallableStatement(conn, SqlUtils.deleteLogFileStatement(fileName));
+            LOGGER.info("File {} was removed from mining", fileName);
         }
     }
 
@@ -43,163 +51,264 @@ public class LogMinerHelper {
         }
     }
 
-    public static void setLogFilesForMining(
+    /**
+     * 互不依赖的查询并发执行: 日志文件目录的刷新和文件大小统计在 metadataQueries 的连接上执行,
+     * 会话中已添加的日志文件的查询以及 remove/add 在挖掘连接上执行. metadataQueries 为 null 时全部在挖掘连接上串行执行
+     *
+     * @param maxLogFiles 最多添加的日志文件数, 按 FIRST_CHANGE# 从小到大保留, 0 表示不限制
+     * @param logFileBytes 接收添加的每个日志文件 (归档和在线) 的字节数, 查询失败时不放入任何值
+     */
+    public static List<LogFile> setLogFilesForMining(
             OracleConnection connection,
+            MetadataQueries metadataQueries,
+            LogFileCatalog catalog,
             long lastProcessedScn,
             long endScn,
-            Duration archiveLogRetention,
+            int maxLogFiles,
             boolean archiveLogOnlyMode,
-            String archiveDestinationName
+            Map<String, Long> logFileBytes
     ) throws SQLException {
-        removeLogFilesFromMining(connection);
+        if (metadataQueries == null) {
+            List<LogFile> logFilesForMining = limitLogFiles(
+                    getLogFilesForMining(connection, catalog, lastProcessedScn, endScn, archiveLogOnlyMode), maxLogFiles);
+            List<String> logFilesNames = fileNames(logFilesForMining);
+            removeLogFilesFromMining(connection);
+            addLogFiles(connection, logFilesNames);
+            logFileBytes.putAll(printToMinedLogFilesSizes(connection, logFilesNames));
+            LOGGER.info("Last mined SCN: {}, Log file list to mine: {}", lastProcessedScn, logFilesNames);
+            return logFilesForMining;
+        }
+        MetadataQueries.Stage stage = metadataQueries.stage("Set log files for mining");
+        CompletableFuture<List<LogFile>> logFilesFuture = null;
+        CompletableFuture<Map<String, Long>> sizesFuture = null;
+        try {
+            logFilesFuture = stage.submit("log files",
+                    c -> getLogFilesForMining(c, catalog, lastProcessedScn, endScn, archiveLogOnlyMode));
+            Set<String> filesInSession = stage.run("log files in session", () -> getLogFilesInMiningSession(connection));
+            List<LogFile> logFilesForMining = limitLogFiles(MetadataQueries.await(logFilesFuture), maxLogFiles);
 
-        List<LogFile> logFilesForMining = getLogFilesForOffsetScn(connection, lastProcessedScn, endScn, archiveLogRetention, archiveLogOnlyMode, archiveDestinationName);
-        if (logFilesForMining.stream().noneMatch(l -> l.getFirstScn() <= lastProcessedScn)) {
-            Long minScn = logFilesForMining.stream()
-                    .map(LogFile::getFirstScn)
-                    .min(Long::compareTo)
-                    .orElse(null);
-
-            if ((minScn == null || logFilesForMining.isEmpty()) && archiveLogOnlyMode) {
-                throw new RuntimeException("The log.mining.archive.log.only mode was recently enabled and the offset SCN " +
-                        lastProcessedScn + "is not yet in any available archive logs. " +
-                        "Please perform an Oracle log switch and restart the connector.");
-            }
-            throw new IllegalStateException("None of log files contains offset SCN: " + lastProcessedScn + ", re-snapshot is required.");
+            List<String> logFilesNames = fileNames(logFilesForMining);
+            sizesFuture = stage.submit("log file sizes", c -> printToMinedLogFilesSizes(c, logFilesNames));
+            stage.run("remove log files", () -> {
+                removeLogFilesFromMining(connection, filesInSession);
+                return null;
+            });
+            stage.run("add log files", () -> {
+                addLogFiles(connection, logFilesNames);
+                return null;
+            });
+            logFileBytes.putAll(MetadataQueries.await(sizesFuture));
+            LOGGER.info("Last mined SCN: {}, Log file list to mine: {}", lastProcessedScn, logFilesNames);
+            return logFilesForMining;
+        } finally {
+            // 挖掘连接上的操作失败时, 等待池中连接上的查询结束再归还, 并且总是记录该阶段的耗时
+            MetadataQueries.awaitQuietly(logFilesFuture);
+            MetadataQueries.awaitQuietly(sizesFuture);
+            stage.finish();
         }
+    }
 
-        List<String> logFilesNames = logFilesForMining.stream().map(LogFile::getFileName).collect(Collectors.toList());
-        /*
-        int j = logFilesNames.size();
-        int i = Math.min(j - 155, j);
-        while (i-- > 0) {
-            logFilesNames.remove(logFilesNames.size() - i - 1);
+    private static List<String> fileNames(List<LogFile> logFiles) {
+        return logFiles.stream().map(LogFile::getFileName).collect(Collectors.toList());
+    }
+
+    /**
+     * 获取需要挖掘的日志文件并检查每个 redo thread 的 scn 覆盖情况, 但不添加到挖掘会话中
+     */
+    public static List<LogFile> getLogFilesForMining(
+            OracleConnection connection,
+            LogFileCatalog catalog,
+            long lastProcessedScn,
+            long endScn,
+            boolean archiveLogOnlyMode
+    ) throws SQLException {
+        List<LogFile> logFilesForMining = getLogFilesForOffsetScn(connection, catalog, lastProcessedScn, endScn);
+        if (logFilesForMining.isEmpty() && archiveLogOnlyMode) {
+            throw new RuntimeException("The log.mining.archive.log.only mode was recently enabled and the offset SCN " +
+                    lastProcessedScn + "is not yet in any available archive logs. " +
+                    "Please perform an Oracle log switch and restart the connector.");
         }
-        */
+        checkThreadsCoverOffsetScn(logFilesForMining, lastProcessedScn);
+        return logFilesForMining;
+    }
+
+    /**
+     * 移除当前会话中已添加的日志文件, 然后把给定的日志文件添加到挖掘会话中
+     */
+    public static void addLogFilesForMining(OracleConnection connection, List<LogFile> logFilesForMining, long lastProcessedScn) throws SQLException {
+        removeLogFilesFromMining(connection);
+
+        List<String> logFilesNames = fileNames(logFilesForMining);
         printToMinedLogFilesSizes(connection, logFilesNames);
+        addLogFiles(connection, logFilesNames);
+
+        LOGGER.info("Last mined SCN: {}, Log file list to mine: {}", lastProcessedScn, logFilesNames);
+    }
+
+    private static void addLogFiles(OracleConnection connection, List<String> logFilesNames) throws SQLException {
         for (String file : logFilesNames) {
             LOGGER.trace("Adding log file {} to mining session", file);
             String addLogFileStatement = SqlUtils.addLogFileStatement("DBMS_LOGMNR.ADDFILE", file);
             executeCallableStatement(connection, addLogFileStatement);
         }
-
-        LOGGER.info("Last mined SCN: {}, Log file list to mine: {}", lastProcessedScn, logFilesNames);
     }
 
-    private static void printToMinedLogFilesSizes(OracleConnection connection, List<String> logFilesForMining) {
-        try {
-            LOGGER.info("Log files count: {}", logFilesForMining.size());
-            connection.query(SqlUtils.archiveLogBytesSizeQuery(logFilesForMining), rs -> {
-                if (rs.next()) {
-                    double mb = rs.getLong(1) / (double) (1024 * 1024);
-                    DecimalFormat df = new DecimalFormat("#.##");
-                    LOGGER.info(
-                            "Total size of log files to mine: {} GB({} MB)",
-                            df.format(mb / 1024),
-                            df.format(mb)
-                    );
-                } else {
-                    LOGGER.info("No log files total sizes were found");
+    /**
+     * RAC 下 redo thread 内的 sequence 必须连续, 否则挖掘结果会缺失该实例的变更.
+     * 第一个日志文件晚于 offset scn 的 thread 视为在 offset scn 之后才启用, 不检查它对 offset scn 的覆盖,
+     * 但至少要有一个 thread 覆盖 offset scn
+     */
+    private static void checkThreadsCoverOffsetScn(List<LogFile> logFiles, long offsetScn) {
+        if (logFiles.isEmpty()) {
+            throw new IllegalStateException("None of log files contains offset SCN: " + offsetScn + ", re-snapshot is required.");
+        }
+        Map<Integer, List<LogFile>> logFilesByThread = groupByThread(logFiles);
+        Set<Integer> coveringThreads = new TreeSet<>();
+        for (Map.Entry<Integer, List<LogFile>> entry : logFilesByThread.entrySet()) {
+            List<LogFile> threadLogFiles = entry.getValue();
+            if (threadLogFiles.get(0).getFirstScn() > offsetScn) {
+                LOGGER.warn("Log files of thread {} start at scn {} after offset scn {}, assuming the thread was enabled later",
+                        entry.getKey(), threadLogFiles.get(0).getFirstScn(), offsetScn);
+            } else {
+                coveringThreads.add(entry.getKey());
+            }
+            for (int i = 1; i < threadLogFiles.size(); i++) {
+                long previous = threadLogFiles.get(i - 1).getSequence();
+                long sequence = threadLogFiles.get(i).getSequence();
+                if (sequence != previous + 1) {
+                    throw new IllegalStateException("Log files of thread " + entry.getKey() + " are not continuous, missing sequence "
+                            + (previous + 1) + " to " + (sequence - 1));
                 }
-            });
-        } catch (SQLException e) {
-            LOGGER.error("Failed to get archive log sizes", e);
+            }
+        }
+        if (coveringThreads.isEmpty()) {
+            throw new IllegalStateException("None of log files contains offset SCN: " + offsetScn + ", re-snapshot is required.");
         }
+        LOGGER.info("Log files of threads {} cover offset scn {}", coveringThreads, offsetScn);
     }
 
-    public static List<LogFile> getLogFilesForOffsetScn(OracleConnection connection, long offsetScn, long endScn, Duration archiveLogRetention, boolean archiveLogOnlyMode,
-                                                        String archiveDestinationName)
-            throws SQLException {
-        LOGGER.info("Getting logs to be mined for offset scn {}", offsetScn);
-
-        final List<LogFile> logFiles = new ArrayList<>();
-        final List<LogFile> onlineLogFiles = new ArrayList<>();
-        final List<LogFile> archivedLogFiles = new ArrayList<>();
-
-        AtomicInteger count = new AtomicInteger();
-        connection.query(SqlUtils.allMinableLogsQuery(offsetScn, endScn, archiveLogRetention, archiveLogOnlyMode, archiveDestinationName), rs -> {
-            LOGGER.info("Processing log files");
-            while (rs.next()) {
-                count.getAndIncrement();
-                String fileName = rs.getString(1);
-                long firstScn = Long.parseLong(rs.getString(2));
-                long nextScn = getNextScn(rs.getString(3));
-                String status = rs.getString(5);
-                String type = rs.getString(6);
-                Long sequence = rs.getLong(7);
-                if ("ARCHIVED".equals(type)) {
-                    // archive log record
-                    LogFile logFile = new LogFile(fileName, firstScn, nextScn, sequence, LogFile.Type.ARCHIVE);
-                    if (logFile.getNextScn() >= offsetScn) {
-                        LOGGER.trace("Archive log {} with SCN range {} to {} sequence {} to be added.", fileName, firstScn, nextScn, sequence);
-                        archivedLogFiles.add(logFile);
-                    }
-                } else if ("ONLINE".equals(type)) {
-                    LogFile logFile = new LogFile(fileName, firstScn, nextScn, sequence, LogFile.Type.REDO, CURRENT.equalsIgnoreCase(status));
-                    if (logFile.isCurrent() || logFile.getNextScn() >= offsetScn) {
-                        LOGGER.trace("Online redo log {} with SCN range {} to {} ({}) sequence {} to be added.", fileName, firstScn, nextScn, status, sequence);
-                        onlineLogFiles.add(logFile);
-                    } else {
-                        LOGGER.trace("Online redo log {} with SCN range {} to {} ({}) sequence {} to be excluded.", fileName, firstScn, nextScn, status, sequence);
-                    }
-                }
+    /**
+     * 按 FIRST_CHANGE# 取最早的 maxLogFiles 个文件, 以它们在各 redo thread 上共同覆盖到的 scn 为界,
+     * 每个 thread 保留 FIRST_CHANGE# 小于该 scn 的文件, 保证每个 thread 都覆盖到同一个 scn.
+     * 因此 RAC 下保留的文件数可能略多于 maxLogFiles
+     */
+    private static List<LogFile> limitLogFiles(List<LogFile> logFiles, int maxLogFiles) {
+        if (maxLogFiles <= 0 || logFiles.size() <= maxLogFiles) {
+            return logFiles;
+        }
+        List<LogFile> sorted = new ArrayList<>(logFiles);
+        sorted.sort(Comparator.comparingLong(LogFile::getFirstScn));
+        Map<Integer, List<LogFile>> logFilesByThread = groupByThread(logFiles);
+        Map<Integer, List<LogFile>> earliest = groupByThread(sorted.subList(0, maxLogFiles));
+        long coveredEndScn = Long.MAX_VALUE;
+        for (Map.Entry<Integer, List<LogFile>> entry : logFilesByThread.entrySet()) {
+            List<LogFile> threadLogFiles = earliest.get(entry.getKey());
+            // 最早的文件中没有该 thread 的文件时, 该 thread 至少保留第一个文件
+            LogFile last = threadLogFiles == null ? entry.getValue().get(0) : threadLogFiles.get(threadLogFiles.size() - 1);
+            coveredEndScn = Math.min(coveredEndScn, last.getNextScn());
+        }
+        List<LogFile> limited = new ArrayList<>();
+        for (LogFile logFile : logFiles) {
+            if (logFile.getFirstScn() < coveredEndScn) {
+                limited.add(logFile);
             }
-        });
+        }
+        LOGGER.info("Log files to mine are limited to {} ({} kept across threads {}), covering scn up to {}",
+                maxLogFiles, limited.size(), logFilesByThread.keySet(), coveredEndScn);
+        return limited;
+    }
 
-        LOGGER.info("Resulting log files to mine: {}", count);
-        LOGGER.info("Found {} archived logs and {} online logs", archivedLogFiles.size(), onlineLogFiles.size());
-
-        // DBZ-3563
-        // To avoid duplicate log files (ORA-01289 cannot add duplicate logfile)
-        // Remove the archive log which has the same sequence number.
-        for (LogFile redoLog : onlineLogFiles) {
-            archivedLogFiles.removeIf(f -> {
-                if (f.getSequence().equals(redoLog.getSequence())) {
-                    LOGGER.trace("Removing archive log {} with duplicate sequence {} to {}", f.getFileName(), f.getSequence(), redoLog.getFileName());
-                    return true;
-                }
-                return false;
-            });
+    /**
+     * 返回日志文件能连续覆盖到的最大 scn, 即各 redo thread 最后一个文件的 NEXT_CHANGE# 中最小的一个
+     */
+    public static long getCoveredEndScn(List<LogFile> logFiles) {
+        long coveredEndScn = Long.MAX_VALUE;
+        for (List<LogFile> threadLogFiles : groupByThread(logFiles).values()) {
+            coveredEndScn = Math.min(coveredEndScn, threadLogFiles.get(threadLogFiles.size() - 1).getNextScn());
         }
-        logFiles.addAll(archivedLogFiles);
-        logFiles.addAll(onlineLogFiles);
+        return coveredEndScn;
+    }
 
-        return logFiles;
+    /**
+     * 按 redo thread 分组, 每组内按 sequence 排序
+     */
+    public static Map<Integer, List<LogFile>> groupByThread(List<LogFile> logFiles) {
+        Map<Integer, List<LogFile>> result = new TreeMap<>();
+        for (LogFile logFile : logFiles) {
+            result.computeIfAbsent(logFile.getThread(), t -> new ArrayList<>()).add(logFile);
+        }
+        for (List<LogFile> threadLogFiles : result.values()) {
+            threadLogFiles.sort(Comparator.comparing(LogFile::getSequence));
+        }
+        return result;
     }
 
-    private static long getNextScn(String longs) {
-        try {
-            return Long.parseLong(longs);
-        } catch (NumberFormatException e) {
-            return Long.MAX_VALUE;
+    /**
+     * 与 (startScn, endScn] 重叠的日志文件的总字节数, 其中任何一个文件的字节数未知时返回 -1
+     *
+     * <p>
+     * 数据字典在 redo 中时会添加 startScn 之后的所有日志, 添加的文件总数随时间增长, 只统计与挖掘窗口重叠的文件,
+     * 同样大小的窗口之间的吞吐量才可以比较
+     */
+    public static long getLogFileBytes(List<LogFile> logFiles, Map<String, Long> logFileBytes, long startScn, long endScn) {
+        long bytes = 0;
+        for (LogFile logFile : logFiles) {
+            if (logFile.getFirstScn() > endScn || logFile.getNextScn() <= startScn) {
+                continue;
+            }
+            Long fileBytes = logFileBytes.get(logFile.getFileName());
+            if (fileBytes == null) {
+                return -1;
+            }
+            bytes += fileBytes;
         }
+        return bytes;
     }
 
-    public static String[] getMinAndMaxScn(OracleConnection connection) throws SQLException {
-        String[] result = new String[4];
+    /**
+     * @return 每个日志文件的字节数, 查询失败时返回空的 map
+     */
+    private static Map<String, Long> printToMinedLogFilesSizes(OracleConnection connection, List<String> logFilesForMining) {
+        Map<String, Long> bytes = new HashMap<>();
         try {
-            connection.query(SqlUtils.getMinAndMaxScnQuery(), rs -> {
-                if (rs.next()) {
-                    // min scn
-                    result[0] = rs.getString(1);
-                    // min scn of last archived log file
-                    result[1] = rs.getString(2);
-                    // max scn
-                    result[2] = rs.getString(3);
+            LOGGER.info("Log files count: {}", logFilesForMining.size());
+            connection.query(SqlUtils.logFileBytesQuery(logFilesForMining), rs -> {
+                while (rs.next()) {
+                    bytes.put(rs.getString(1), rs.getLong(2));
                 }
             });
+            if (bytes.isEmpty()) {
+                LOGGER.info("No log files total sizes were found");
+            } else {
+                double mb = bytes.values().stream().mapToLong(Long::longValue).sum() / (double) (1024 * 1024);
+                DecimalFormat df = new DecimalFormat("#.##");
+                LOGGER.info(
+                        "Total size of log files to mine: {} GB({} MB)",
+                        df.format(mb / 1024),
+                        df.format(mb)
+                );
+            }
         } catch (SQLException e) {
-            throw new SQLException("Failed to get min and max scn", e);
-        }
-        try {
-            result[3] = String.valueOf(getCurrentScn(connection));
-        } catch (SQLException e) {
-            throw new SQLException("Failed to get current scn", e);
+            LOGGER.error("Failed to get log file sizes", e);
+            bytes.clear();
         }
-        return result;
+        return bytes;
+    }
+
+    public static List<LogFile> getLogFilesForOffsetScn(OracleConnection connection, LogFileCatalog catalog, long offsetScn, long endScn)
+            throws SQLException {
+        LOGGER.info("Getting logs to be mined for offset scn {}", offsetScn);
+
+        catalog.refresh(connection, offsetScn);
+        List<LogFile> logFiles = catalog.getLogFiles(offsetScn, endScn);
+
+        long archived = logFiles.stream().filter(f -> f.getType() == LogFile.Type.ARCHIVE).count();
+        LOGGER.info("Resulting log files to mine: {}", logFiles.size());
+        LOGGER.info("Found {} archived logs and {} online logs", archived, logFiles.size() - archived);
+        return logFiles;
     }
 
-    private static long getCurrentScn(OracleConnection connection) throws SQLException {
+    public static long getCurrentScn(OracleConnection connection) throws SQLException {
         String sql = "SELECT CURRENT_SCN FROM V$DATABASE";
         AtomicLong currentScn = new AtomicLong();
         connection.query(sql, rs -> {
@@ -0,0 +1,96 @@
+import util.RedoSink;
+import util.SqlUtils;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * V$LOGMNR_CONTENTS 中的一行, 列顺序与 {@link SqlUtils#queryLogMinerContents()} 一致
+ *
+ * @author zhul
+ */
+public class LogMinerRow {
+
+    private final long scn;
+    private final int operationCode;
+    private final String xid;
+    private final String segOwner;
+    private final String tableName;
+    private final String sqlRedo;
+    private final int thread;
+
+    public LogMinerRow(long scn, int operationCode, String xid, String segOwner, String tableName, String sqlRedo, int thread) {
+        this.scn = scn;
+        this.operationCode = operationCode;
+        this.xid = xid;
+        this.segOwner = segOwner;
+        this.tableName = tableName;
+        this.sqlRedo = sqlRedo;
+        this.thread = thread;
+    }
+
+    /**
+     * 从结果集当前行读取, 当 SQL_REDO 跨多行时会推进结果集
+     */
+    public static LogMinerRow from(ResultSet rs, int thread) throws SQLException {
+        long scn = rs.getLong(1);
+        int operationCode = rs.getInt(3);
+        String xid = rs.getString(5);
+        String tableName = rs.getString(7);
+        String segOwner = rs.getString(8);
+        String sqlRedo = SqlUtils.getSqlRedo(rs);
+        return new LogMinerRow(scn, operationCode, xid, segOwner, tableName, sqlRedo, thread);
+    }
+
+    /**
+     * 从结果集当前行读取, SQL_REDO 流式写入 sink 而不保存在返回的行中
+     */
+    public static LogMinerRow from(ResultSet rs, int thread, RedoSink sink) throws SQLException {
+        long scn = rs.getLong(1);
+        int operationCode = rs.getInt(3);
+        String xid = rs.getString(5);
+        String tableName = rs.getString(7);
+        String segOwner = rs.getString(8);
+        try {
+            SqlUtils.streamSqlRedo(rs, sink);
+        } catch (IOException e) {
+            throw new SQLException("Failed to write SQL_REDO", e);
+        }
+        return new LogMinerRow(scn, operationCode, xid, segOwner, tableName, null, thread);
+    }
+
+    public long getScn() {
+        return scn;
+    }
+
+    public int getOperationCode() {
+        return operationCode;
+    }
+
+    public String getXid() {
+        return xid;
+    }
+
+    public String getSegOwner() {
+        return segOwner;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * SQL_REDO 被流式写入 {@link RedoSink} 时为 null
+     */
+    public String getSqlRedo() {
+        return sqlRedo;
+    }
+
+    /**
+     * 挖掘出该行的 redo thread, 串行挖掘时为 0
+     */
+    public int getThread() {
+        return thread;
+    }
+}
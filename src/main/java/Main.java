@@ -1,13 +1,23 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import parser.ChangeEvent;
+import parser.RedoSqlParser;
+import parser.RedoSqlParserBenchmark;
+import sink.AsyncBatchingSink;
+import sink.EventSinks;
+import util.ChannelRedoSink;
+import util.MiningStrategy;
 import util.OracleHelper;
-import util.SqlUtils;
 
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.sql.SQLException;
 import java.time.Duration;
+import java.text.SimpleDateFormat;
 import java.time.Instant;
+import java.util.Date;
 import java.util.Scanner;
 
 /**
@@ -28,6 +38,41 @@ import java.util.Scanner;
  * 3. start log miner // 启动慢
  * ~~4. query redo sql~~ // 由于现场环境性能问题不是出现在这里, 因此这一步被省略掉了
  * 5. end log miner
+ * <p>
+ * 启动时指定 -Dlogminer.rac.parallel=true 时, RAC 下每个 redo thread 的日志在单独的会话中并行挖掘, 结果按 scn 归并
+ * <p>
+ * 指定 -Dlogminer.window.size=N 时, [start-scn, end-scn] 按每 N 个 scn 一个窗口依次挖掘, 每个窗口完成后记录检查点
+ * (-Dlogminer.checkpoint.file, 默认 log_miner_checkpoint.log), 进程异常退出后使用相同参数重新运行会自动从检查点继续.
+ * 指定 -Dlogminer.query.contents=true 时会查询 V$LOGMNR_CONTENTS, 检查点中的重启点会考虑未提交的事务
+ * <p>
+ * 各阶段可以通过 -Dlogminer.timeout.&lt;build|start|query|end&gt;.ms 指定时间预算, 超时的语句会被 cancel,
+ * 指定 -Dlogminer.timeout.kill=true 时在宽限期 (-Dlogminer.timeout.kill.grace.ms) 后通过另一条连接 kill 掉挖掘会话.
+ * 超时或失败的窗口记录在结果中, 之后的窗口不再挖掘
+ * <p>
+ * 指定 -Dlogminer.redo.file=path 时, 查询到的 SQL_REDO 流式写入该文件, 不在内存中拼接, 不能与 -Dlogminer.sink 或
+ * -Dlogminer.parse 同时使用.
+ * -Dlogminer.lob.enabled=true 时同时挖掘 LOB 操作, 单条 SQL_REDO 超过 -Dlogminer.lob.limit.bytes (默认 40 MB) 的部分被截断
+ * <p>
+ * 指定 -Dlogminer.parse=true 时, SQL_REDO 被解析为列级变更事件 ({@link RedoSqlParser}) 后再输出
+ * <p>
+ * 指定 -Dlogminer.sink=&lt;null|counting|file|queue&gt; 时, 解析出的变更事件不再写日志, 而是异步批量投递到对应的 sink
+ * (见 {@link EventSinks}), 用来测量包括投递开销在内的端到端吞吐量. 此时每一行都会被解析, null sink 测得的是抓取 + 解析 +
+ * 攒批的基线. 批大小和等待时间由 -Dlogminer.sink.batch.size 和 -Dlogminer.sink.linger.ms 指定, 文件或目录由
+ * -Dlogminer.sink.path 指定. 记录检查点之前会等待事件全部投递, 没有产生事件的行 (DDL, commit 等) 单独计数
+ * <p>
+ * 数据字典来源和 START_LOGMNR 选项见 {@link MiningStrategy}
+ * <p>
+ * 准备阶段互不依赖的元数据查询在最多 -Dlogminer.metadata.concurrency (默认 2, 0 表示在挖掘连接上串行执行) 个额外的连接上并发执行,
+ * 见 {@link MetadataQueries}
+ * <p>
+ * 每个挖掘周期的结果记录在 -Dlogminer.results.file (默认 log_miner_results.log) 中, 见 {@link ResultsStore}
+ * <p>
+ * 指定 -Dlogminer.mode=sweep 时进入参数扫描模式, 见 {@link ParameterSweep};
+ * -Dlogminer.mode=compare 时对比两组运行并报告显著的性能退化 (有退化时退出码为 1), 不需要连接数据库, 见 {@link RegressionCheck};
+ * -Dlogminer.mode=parser-benchmark 时运行 SQL_REDO 解析器的基准测试, 不需要连接数据库;
+ * -Dlogminer.mode=strategy-matrix 时用所有挖掘策略的组合挖掘同一个窗口并输出对比表, 见 {@link StrategyMatrix};
+ * -Dlogminer.mode=profile 时统计 V$LOGMNR_CONTENTS 中 redo 按表, 操作和 scn 的分布, 见 {@link ContentsProfiler};
+ * -Dlogminer.mode=daemon 时作为守护进程运行, 连接和挖掘状态在多个作业之间复用, 见 {@link MiningDaemon}
  *
  * @author zhul
  */
@@ -37,9 +82,59 @@ public class Main {
 
     private static final Logger LOGGER_REDO_SQL = LoggerFactory.getLogger("REDO_SQL");
 
-    private static final String STRATEGY = "redo_log";
+    private static final MiningStrategy MINING_STRATEGY = MiningStrategy.fromSystemProperties();
+
+    private static final boolean MINE_THREADS_IN_PARALLEL = Boolean.getBoolean("logminer.rac.parallel");
+
+    private static final boolean QUERY_CONTENTS = Boolean.getBoolean("logminer.query.contents");
+
+    private static final long WINDOW_SIZE = Long.getLong("logminer.window.size", 0L);
+
+    private static final String CHECKPOINT_FILE = System.getProperty("logminer.checkpoint.file", "log_miner_checkpoint.log");
+
+    private static final int CHECKPOINT_SYNC_EVERY_RECORDS = Integer.getInteger("logminer.checkpoint.sync.records", 8);
+
+    private static final long CHECKPOINT_SYNC_INTERVAL_MILLIS = Long.getLong("logminer.checkpoint.sync.interval.ms", 5000L);
+
+    private static final boolean KILL_SESSION_ON_TIMEOUT = Boolean.getBoolean("logminer.timeout.kill");
+
+    private static final long KILL_GRACE_PERIOD_MILLIS = Long.getLong("logminer.timeout.kill.grace.ms", 10000L);
+
+    private static final String MODE = System.getProperty("logminer.mode", "mine");
+
+    private static final String REDO_FILE = System.getProperty("logminer.redo.file");
+
+    private static final int REDO_FILE_BUFFER_SIZE = 1024 * 1024;
+
+    private static final boolean PARSE_REDO = Boolean.getBoolean("logminer.parse");
+
+    private static final int PARSER_CACHED_TABLES = Integer.getInteger("logminer.parse.cached.tables", 1024);
+
+    private static final String SINK = System.getProperty("logminer.sink");
+
+    private static final String SINK_PATH = System.getProperty("logminer.sink.path");
+
+    private static final int SINK_BATCH_SIZE = Integer.getInteger("logminer.sink.batch.size", 1000);
+
+    private static final long SINK_LINGER_MILLIS = Long.getLong("logminer.sink.linger.ms", 50L);
+
+    private static final int SINK_QUEUE_CAPACITY = Integer.getInteger("logminer.sink.queue.capacity", 65536);
+
+    private static final int DAEMON_PORT = Integer.getInteger("logminer.daemon.port", 9464);
+
+    private static final int PROFILE_BUCKETS = Integer.getInteger("logminer.profile.buckets", 50);
+
+    private static final int PROFILE_TOP_TABLES = Integer.getInteger("logminer.profile.top", 20);
+
+    private static final boolean PROFILE_BYTES = Boolean.getBoolean("logminer.profile.bytes");
 
-    private static final boolean IS_CONTINUOUS_MINING = false;
+    private static final int METADATA_CONCURRENCY = Integer.getInteger("logminer.metadata.concurrency", 2);
+
+    private static final String RUN_ID = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+
+    private static final String RESULTS_FILE = System.getProperty("logminer.results.file", "log_miner_results.log");
+
+    private static final String RESULTS_LABEL = System.getProperty("logminer.results.label", RUN_ID);
 
     private String url = "jdbc:oracle:thin:@//192.168.62.37:1521/ORCLPDB1";
     private String user = "c##xiaolei_read";
@@ -49,12 +144,45 @@ public class Main {
     private long scnBatch = 0;
     private boolean scnSetManually = false;
 
-    public static void main(String[] args) throws SQLException {
+    private final LogFileCatalog logFileCatalog = new LogFileCatalog(Duration.ZERO, false, null);
+
+    private MetadataQueries metadataQueries;
+
+    private ResultsStore resultsStore;
+
+    private ScnProbe scnProbe;
+
+    public static void main(String[] args) throws SQLException, IOException {
         LOGGER.info("========== Start mining ==========");
         LOGGER.info("Starting redo log mining");
+        if (REDO_FILE != null && (SINK != null || PARSE_REDO)) {
+            // SQL_REDO 写入文件后不再保留在行中, 无法解析和投递
+            throw new IllegalArgumentException("logminer.redo.file can not be combined with logminer.sink or logminer.parse");
+        }
         Main main = new Main();
         main.initParams(args);
-        main.initializeRedoLogsForMining();
+        if ("parser-benchmark".equalsIgnoreCase(MODE)) {
+            RedoSqlParserBenchmark.main(args);
+            return;
+        }
+        if ("compare".equalsIgnoreCase(MODE)) {
+            boolean regression = new RegressionCheck(ResultsStore.load(Paths.get(RESULTS_FILE))).run();
+            if (regression) {
+                System.exit(1);
+            }
+            return;
+        }
+        if ("sweep".equalsIgnoreCase(MODE)) {
+            main.runParameterSweep();
+        } else if ("strategy-matrix".equalsIgnoreCase(MODE)) {
+            main.runStrategyMatrix();
+        } else if ("profile".equalsIgnoreCase(MODE)) {
+            main.runProfile();
+        } else if ("daemon".equalsIgnoreCase(MODE)) {
+            main.runDaemon();
+        } else {
+            main.initializeRedoLogsForMining();
+        }
         LOGGER.info("========== End mining ==========\n");
     }
 
@@ -87,36 +215,231 @@ public class Main {
         }
     }
 
-    private void initializeRedoLogsForMining() throws SQLException {
-        Instant now = Instant.now();
-        OracleConnection connection = new OracleConnection(url, user, password);
-        LOGGER.info("Connecting to {} cost {}", url, Duration.between(now, Instant.now()));
+    private void initializeRedoLogsForMining() throws SQLException, IOException {
+        OracleConnection connection = connect();
 
         configureScnIfNeeded(connection);
 
         LOGGER.info("Initializing redo logs for mining");
         LOGGER.info("startScn={}, endScn={}, gap={}", startScn, endScn, endScn + scnBatch - startScn);
-        buildDataDictionary(connection);
-        setLogFilesForMining(connection, startScn, endScn + scnBatch);
-        startMiningSession(connection, startScn, endScn);
-        // queryLogMinerContents(connection, startScn, endScn);
-        endMiningSession(connection);
+        try (CheckpointStore checkpointStore = new CheckpointStore(
+                Paths.get(CHECKPOINT_FILE), CHECKPOINT_SYNC_EVERY_RECORDS, CHECKPOINT_SYNC_INTERVAL_MILLIS);
+             StatementWatchdog watchdog = createStatementWatchdog();
+             FileChannel redoChannel = REDO_FILE == null ? null : FileChannel.open(Paths.get(REDO_FILE),
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+             AsyncBatchingSink eventSink = SINK == null ? null : new AsyncBatchingSink(
+                     EventSinks.create(SINK, SINK_PATH), SINK_BATCH_SIZE, SINK_LINGER_MILLIS, SINK_QUEUE_CAPACITY)) {
+            MiningCycle miningCycle = createMiningCycle(connection, watchdog);
+            if (redoChannel != null) {
+                miningCycle.setRedoSink(new ChannelRedoSink(redoChannel, REDO_FILE_BUFFER_SIZE));
+            }
+            long windowStartScn = getResumeScn(checkpointStore);
+            TransactionTracker transactionTracker = new TransactionTracker();
+            RedoSqlParser parser = new RedoSqlParser(PARSER_CACHED_TABLES);
+            ThreadParallelMiner.RowConsumer rowConsumer = null;
+            if (QUERY_CONTENTS || MINE_THREADS_IN_PARALLEL || eventSink != null) {
+                rowConsumer = row -> {
+                    transactionTracker.accept(row);
+                    if (row.getSqlRedo() == null) {
+                        if (eventSink != null) {
+                            eventSink.skip();
+                        }
+                        return;
+                    }
+                    ChangeEvent event = PARSE_REDO || eventSink != null
+                            ? parser.parse(row.getSqlRedo(), row.getScn(), row.getXid())
+                            : null;
+                    if (eventSink != null) {
+                        if (event == null) {
+                            eventSink.skip();
+                            return;
+                        }
+                        try {
+                            eventSink.accept(event);
+                        } catch (IOException e) {
+                            throw new SQLException("Failed to deliver change event", e);
+                        }
+                    } else if (event != null) {
+                        LOGGER_REDO_SQL.info("{} {}", row.getThread(), event);
+                    } else {
+                        LOGGER_REDO_SQL.info("{} {} {}", row.getThread(), row.getScn(), row.getSqlRedo());
+                    }
+                };
+            }
+            Instant miningStart = Instant.now();
+            do {
+                long windowEndScn = WINDOW_SIZE > 0 ? Math.min(windowStartScn + WINDOW_SIZE, endScn) : endScn;
+                CycleResult result = miningCycle.mine(windowStartScn, windowEndScn, scnBatch, 0, rowConsumer,
+                        r -> {
+                            if (eventSink != null) {
+                                eventSink.flush();
+                            }
+                            checkpoint(checkpointStore, transactionTracker, r.getMinedEndScn());
+                        });
+                if (!result.isOk()) {
+                    LOGGER.warn("Window [{}, {}] ended with {}, remaining windows are skipped",
+                            windowStartScn, windowEndScn, result.getStatus());
+                    break;
+                }
+                windowStartScn = result.getMinedEndScn();
+            } while (windowStartScn < endScn);
+            if (eventSink != null) {
+                eventSink.flush();
+                Duration cost = Duration.between(miningStart, Instant.now());
+                LOGGER.info("End-to-end: {} change events delivered to {} sink in {}, {} rows without event, {} events/s",
+                        eventSink.getDelivered(), SINK, cost, eventSink.getSkipped(),
+                        String.format("%.0f", eventSink.getDelivered() * 1000.0 / Math.max(1, cost.toMillis())));
+            }
+            if (PARSE_REDO || eventSink != null) {
+                LOGGER.info("SQL_REDO parsed: {}, failed: {}, table layout hits: {}, misses: {}",
+                        parser.getParsed(), parser.getFailed(), parser.getLayoutHits(), parser.getLayoutMisses());
+            }
+        }
+
+        disconnect(connection);
+    }
+
+    private void runParameterSweep() throws SQLException, IOException {
+        OracleConnection connection = connect();
+
+        configureScnIfNeeded(connection);
+
+        try (StatementWatchdog watchdog = createStatementWatchdog()) {
+            MiningCycle miningCycle = createMiningCycle(connection, watchdog);
+            new ParameterSweep(miningCycle, startScn, endScn, scnBatch).run();
+        }
+
+        disconnect(connection);
+    }
+
+    private void runStrategyMatrix() throws SQLException, IOException {
+        OracleConnection connection = connect();
+
+        configureScnIfNeeded(connection);
+
+        try (StatementWatchdog watchdog = createStatementWatchdog()) {
+            new StrategyMatrix(strategy -> createMiningCycle(connection, watchdog, strategy, false),
+                    MINING_STRATEGY, startScn, endScn, scnBatch).run();
+        }
+
+        disconnect(connection);
+    }
+
+    private void runProfile() throws SQLException, IOException {
+        OracleConnection connection = connect();
+
+        configureScnIfNeeded(connection);
+
+        if (MINE_THREADS_IN_PARALLEL) {
+            LOGGER.warn("logminer.rac.parallel is ignored in profile mode, contents are profiled in a single session");
+        }
+        try (StatementWatchdog watchdog = createStatementWatchdog()) {
+            MiningCycle miningCycle = createMiningCycle(connection, watchdog, MINING_STRATEGY, false);
+            ContentsProfiler profiler = new ContentsProfiler(startScn, endScn, PROFILE_BUCKETS, PROFILE_TOP_TABLES, PROFILE_BYTES);
+            miningCycle.setContentsProfiler(profiler);
+            long windowStartScn = startScn;
+            do {
+                long windowEndScn = WINDOW_SIZE > 0 ? Math.min(windowStartScn + WINDOW_SIZE, endScn) : endScn;
+                CycleResult result = miningCycle.mine(windowStartScn, windowEndScn, scnBatch, 0, null, null);
+                if (!result.isOk()) {
+                    LOGGER.warn("Window [{}, {}] ended with {}, remaining windows are skipped",
+                            windowStartScn, windowEndScn, result.getStatus());
+                    break;
+                }
+                windowStartScn = result.getMinedEndScn();
+            } while (windowStartScn < endScn);
+            profiler.print();
+        }
+
+        disconnect(connection);
+    }
+
+    private void runDaemon() throws SQLException, IOException {
+        OracleConnection connection = connect();
+
+        try (StatementWatchdog watchdog = createStatementWatchdog()) {
+            MiningCycle miningCycle = createMiningCycle(connection, watchdog);
+            new MiningDaemon(miningCycle, scnProbe, DAEMON_PORT).run();
+        }
+
+        disconnect(connection);
+    }
+
+    private OracleConnection connect() throws SQLException {
+        Instant now = Instant.now();
+        OracleConnection connection = new OracleConnection(url, user, password);
+        LOGGER.info("Connecting to {} cost {}", url, Duration.between(now, Instant.now()));
+        metadataQueries = new MetadataQueries(url, user, password, METADATA_CONCURRENCY, connection);
+        scnProbe = new ScnProbe(metadataQueries);
+        try {
+            resultsStore = new ResultsStore(Paths.get(RESULTS_FILE), RUN_ID, RESULTS_LABEL, url);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to open results store {}, results will not be recorded: {}", RESULTS_FILE, e.getMessage());
+        }
+        return connection;
+    }
 
+    private void disconnect(OracleConnection connection) throws SQLException, IOException {
+        metadataQueries.logTotals();
+        metadataQueries.close();
+        if (resultsStore != null) {
+            resultsStore.close();
+        }
         printOracleMetrics(connection);
         connection.close();
         LOGGER.info("Connection closed");
     }
 
+    private StatementWatchdog createStatementWatchdog() {
+        return new StatementWatchdog(url, user, password, KILL_SESSION_ON_TIMEOUT, Duration.ofMillis(KILL_GRACE_PERIOD_MILLIS));
+    }
+
+    private MiningCycle createMiningCycle(OracleConnection connection, StatementWatchdog watchdog) {
+        return createMiningCycle(connection, watchdog, MINING_STRATEGY, MINE_THREADS_IN_PARALLEL);
+    }
+
+    private MiningCycle createMiningCycle(OracleConnection connection, StatementWatchdog watchdog,
+                                          MiningStrategy strategy, boolean mineThreadsInParallel) {
+        ThreadParallelMiner parallelMiner = mineThreadsInParallel
+                ? new ThreadParallelMiner(url, user, password, strategy, watchdog)
+                : null;
+        MiningCycle miningCycle = new MiningCycle(connection, logFileCatalog, watchdog, strategy, parallelMiner);
+        miningCycle.setMetadataQueries(metadataQueries);
+        miningCycle.setResultsStore(resultsStore);
+        return miningCycle;
+    }
+
+    private long getResumeScn(CheckpointStore checkpointStore) {
+        Checkpoint checkpoint = checkpointStore.latest(url, startScn, endScn);
+        if (checkpoint == null) {
+            return startScn;
+        }
+        if (checkpoint.isRangeCompleted()) {
+            LOGGER.info("Scn range was already completed by {}, mining from start scn again", checkpoint);
+            return startScn;
+        }
+        LOGGER.info("Resuming mining from {}", checkpoint);
+        return checkpoint.getRestartScn();
+    }
+
+    private void checkpoint(CheckpointStore checkpointStore, TransactionTracker transactionTracker, long windowEndScn) throws IOException {
+        Checkpoint checkpoint = new Checkpoint(url, startScn, endScn, windowEndScn,
+                transactionTracker.getRestartScn(windowEndScn), transactionTracker.getOpenTransactionCount(),
+                System.currentTimeMillis());
+        checkpointStore.append(checkpoint);
+        LOGGER.info("Checkpoint recorded: {}", checkpoint);
+    }
+
     private void configureScnIfNeeded(OracleConnection connection) throws SQLException {
         if (!scnSetManually) {
             return;
         }
         LOGGER.info("Configuring scn");
-        final String[] minAndMaxScnArray = LogMinerHelper.getMinAndMaxScn(connection);
-        LOGGER.info("min scn: {}", minAndMaxScnArray[0]);
-        LOGGER.info("max scn: {}", minAndMaxScnArray[2]);
-        LOGGER.info("current scn: {}", minAndMaxScnArray[3]);
-        LOGGER.info("min scn of last archived log file: {}", minAndMaxScnArray[1]);
+        final ScnProbe.Result scnRange = scnProbe.probe();
+        LOGGER.info("min scn (online logs and {} recent archived logs): {}", scnRange.getArchivedLogs(), scnRange.getMinScn());
+        LOGGER.info("min scn of last archived log file: {}", scnRange.getLastArchivedFirstScn());
+        LOGGER.info("min scn of current log file: {}", scnRange.getCurrentLogFirstScn());
+        LOGGER.info("current scn: {}", scnRange.getCurrentScn());
 
         final Scanner scanner = new Scanner(System.in);
         System.out.print("Please input start scn: ");
@@ -141,91 +464,4 @@ public class Main {
         OracleHelper.printMetrics(connection.connection(), "session pga memory max");
         OracleHelper.printPGA(connection.connection());
     }
-
-    public void endMiningSession(OracleConnection connection) throws SQLException {
-        Instant now = Instant.now();
-        try {
-            LOGGER.info("Ending mining session");
-            connection.executeWithoutCommitting("BEGIN SYS.DBMS_LOGMNR.END_LOGMNR(); END;");
-        } catch (SQLException e) {
-            if (e.getMessage().toUpperCase().contains("ORA-01307")) {
-                LOGGER.info("LogMiner mining session is already closed.");
-                return;
-            }
-            // LogMiner failed to terminate properly, a restart of the connector will be required.
-            throw e;
-        }
-        LOGGER.info("Ending mining session cost {}", Duration.between(now, Instant.now()));
-    }
-
-    private void queryLogMinerContents(OracleConnection connection, long startScn, Long endScn) throws SQLException {
-        LOGGER.info("Query log miner contents");
-        LOGGER_REDO_SQL.info("========== Start query log miner contents ==========");
-        Instant now = Instant.now();
-        try (PreparedStatement statement = createQueryStatement(connection)) {
-            statement.setFetchSize(8192);
-            statement.setFetchDirection(ResultSet.FETCH_FORWARD);
-            statement.setString(1, String.valueOf(startScn));
-            statement.setString(2, String.valueOf(endScn));
-
-            try (ResultSet resultSet = statement.executeQuery()) {
-                int count = 0;
-                while (resultSet.next()) {
-                    count++;
-                    LOGGER_REDO_SQL.info("{}", SqlUtils.getSqlRedo(resultSet));
-                }
-                LOGGER_REDO_SQL.info("{} redo log records fetched", count);
-            }
-        }
-        LOGGER.info(
-                "Query log miner contents cost {}, see redo sql log files to know more details",
-                Duration.between(now, Instant.now())
-        );
-        LOGGER_REDO_SQL.info("========== End query log miner contents ==========\n");
-    }
-
-    private PreparedStatement createQueryStatement(OracleConnection connection) throws SQLException {
-        String sql = SqlUtils.queryLogMinerContents();
-        return connection.connection().prepareStatement(
-                sql,
-                ResultSet.TYPE_FORWARD_ONLY,
-                ResultSet.CONCUR_READ_ONLY,
-                ResultSet.HOLD_CURSORS_OVER_COMMIT
-        );
-    }
-
-    private long getEndScn(long startScn, Long endScn, long scnBatch) {
-        if (endScn == null) {
-            return startScn + scnBatch;
-        }
-        return endScn;
-    }
-
-    private void setLogFilesForMining(OracleConnection connection, long startScn, long endScn) throws SQLException {
-        Instant start = Instant.now();
-        LogMinerHelper.setLogFilesForMining(connection, startScn, endScn, Duration.ZERO, false, null);
-        LOGGER.info("Set log files for mining cost {}", Duration.between(start, Instant.now()));
-    }
-
-    public void startMiningSession(OracleConnection connection, long startScn, long endScn) throws SQLException {
-        LOGGER.info("Starting mining session startScn={}, endScn={}, strategy={}, continuous={}",
-                startScn, endScn, STRATEGY, IS_CONTINUOUS_MINING);
-        try {
-            Instant start = Instant.now();
-            connection.executeWithoutCommitting(SqlUtils.startLogMinerStatement(startScn, endScn, IS_CONTINUOUS_MINING));
-            LOGGER.info("Start mining session cost {}", Duration.between(start, Instant.now()));
-        } catch (SQLException e) {
-            throw e;
-        }
-    }
-
-    private void buildDataDictionary(OracleConnection connection) throws SQLException {
-        LOGGER.info("Building data dictionary");
-        Instant start = Instant.now();
-        // connection.executeWithoutCommitting("create directory my_dictionary_dir_2 as ''");
-        final String buildInRedoLogSql = "BEGIN DBMS_LOGMNR_D.BUILD (options => DBMS_LOGMNR_D.STORE_IN_REDO_LOGS); END;";
-        final String buildInFlatFileSql = "BEGIN DBMS_LOGMNR_D.BUILD (dictionary_filename => 'dictionary.ora', dictionary_location => '/opt/oracle/database', options => DBMS_LOGMNR_D.STORE_IN_FLAT_FILE); END;";
-        connection.executeWithoutCommitting(SqlUtils.MINE_LOG_WITH_END_SCN ? buildInFlatFileSql : buildInRedoLogSql);
-        LOGGER.info("Build data dictionary cost {}", Duration.between(start, Instant.now()));
-    }
 }
@@ -0,0 +1,235 @@
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.TaskExecutors;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 在独立的连接上并发执行互不依赖的元数据查询 (V$LOG, V$ARCHIVED_LOG, V$DATABASE 等)
+ *
+ * <p>
+ * 连接按需创建, 最多 poolSize 个, 用完放回池中复用. 任务通过 {@link TaskExecutors} 执行, 新版 JDK 上使用虚拟线程.
+ * poolSize 为 0 时不创建额外的连接, 任务在调用线程中使用挖掘连接串行执行, 与原来的行为一致.
+ * <p>
+ * V$LOGMNR_LOGS 等会话级视图只能在挖掘连接上查询, 不能交给这里执行.
+ * <p>
+ * 一组并发查询用 {@link Stage} 计时: 关键路径 (从开始到最后一个查询完成的墙钟时间) 与各查询耗时之和的对比
+ * 就是并发节省的时间.
+ *
+ * @author zhul
+ */
+public class MetadataQueries implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetadataQueries.class);
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int poolSize;
+    private final OracleConnection miningConnection;
+    private final ExecutorService executor;
+    private final BlockingQueue<OracleConnection> idleConnections = new LinkedBlockingQueue<>();
+    private final List<OracleConnection> connections = new ArrayList<>();
+
+    private final AtomicLong criticalPathNanos = new AtomicLong();
+    private final AtomicLong serialNanos = new AtomicLong();
+    private final AtomicLong queries = new AtomicLong();
+
+    /**
+     * @param miningConnection poolSize 为 0 时用来串行执行查询
+     */
+    public MetadataQueries(String url, String user, String password, int poolSize, OracleConnection miningConnection) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.poolSize = poolSize;
+        this.miningConnection = miningConnection;
+        this.executor = poolSize > 0 ? TaskExecutors.newBlockingTaskExecutor("metadata-query", poolSize) : null;
+    }
+
+    public Stage stage(String name) {
+        return new Stage(name);
+    }
+
+    private <T> T runWithConnection(ConnectionTask<T> task) throws SQLException {
+        if (executor == null) {
+            return task.run(miningConnection);
+        }
+        OracleConnection connection = borrow();
+        try {
+            return task.run(connection);
+        } finally {
+            idleConnections.offer(connection);
+        }
+    }
+
+    private OracleConnection borrow() throws SQLException {
+        OracleConnection connection = idleConnections.poll();
+        if (connection != null) {
+            return connection;
+        }
+        synchronized (connections) {
+            if (connections.size() < poolSize) {
+                connection = new OracleConnection(url, user, password);
+                connections.add(connection);
+                LOGGER.info("Opened metadata connection {} of {}", connections.size(), poolSize);
+                return connection;
+            }
+        }
+        try {
+            return idleConnections.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a metadata connection", e);
+        }
+    }
+
+    public void logTotals() {
+        long serial = serialNanos.get();
+        long critical = criticalPathNanos.get();
+        LOGGER.info("Metadata queries: {}, critical path {} ms, serial sum {} ms, saved {} ms",
+                queries.get(), critical / 1_000_000, serial / 1_000_000, Math.max(0, serial - critical) / 1_000_000);
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        synchronized (connections) {
+            for (OracleConnection connection : connections) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    LOGGER.warn("Failed to close metadata connection: {}", e.getMessage());
+                }
+            }
+            connections.clear();
+        }
+        idleConnections.clear();
+    }
+
+    /**
+     * 一组并发的查询, 创建时开始计时, {@link #finish()} 时输出关键路径和串行耗时之和
+     */
+    public class Stage {
+
+        private final String name;
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong stageSerialNanos = new AtomicLong();
+        private int stageQueries = 0;
+
+        private Stage(String name) {
+            this.name = name;
+        }
+
+        /**
+         * 在池中的连接上异步执行查询
+         */
+        public <T> CompletableFuture<T> submit(String queryName, ConnectionTask<T> task) {
+            stageQueries++;
+            if (executor == null) {
+                CompletableFuture<T> future = new CompletableFuture<>();
+                try {
+                    future.complete(timed(queryName, () -> runWithConnection(task)));
+                } catch (SQLException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+                return future;
+            }
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return timed(queryName, () -> runWithConnection(task));
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        }
+
+        /**
+         * 在调用线程中执行必须使用挖掘连接的查询, 计入串行耗时之和
+         */
+        public <T> T run(String queryName, Query<T> query) throws SQLException {
+            stageQueries++;
+            return timed(queryName, query);
+        }
+
+        private <T> T timed(String queryName, Query<T> query) throws SQLException {
+            long start = System.nanoTime();
+            try {
+                return query.run();
+            } finally {
+                long nanos = System.nanoTime() - start;
+                stageSerialNanos.addAndGet(nanos);
+                LOGGER.debug("Metadata query {} of {} cost {} ms", queryName, name, nanos / 1_000_000);
+            }
+        }
+
+        public void finish() {
+            long critical = System.nanoTime() - startNanos;
+            long serial = stageSerialNanos.get();
+            criticalPathNanos.addAndGet(critical);
+            serialNanos.addAndGet(serial);
+            queries.addAndGet(stageQueries);
+            LOGGER.info("{}: {} metadata queries, critical path {}, serial sum {}",
+                    name, stageQueries, Duration.ofNanos(critical), Duration.ofNanos(serial));
+        }
+    }
+
+    /**
+     * 等待异步查询完成, 把失败原因还原为 SQLException
+     */
+    public static <T> T await(CompletableFuture<T> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a metadata query", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException("Metadata query failed", cause);
+        }
+    }
+
+    /**
+     * 等待异步查询结束, 忽略结果和失败, future 为 null 时直接返回. 用于出错后的清理, 保证池中的连接不在查询中时才被复用
+     */
+    public static void awaitQuietly(CompletableFuture<?> future) {
+        if (future == null) {
+            return;
+        }
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.debug("Metadata query failed: {}", e.getCause().getMessage());
+        }
+    }
+
+    @FunctionalInterface
+    public interface ConnectionTask<T> {
+        T run(OracleConnection connection) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface Query<T> {
+        T run() throws SQLException;
+    }
+}
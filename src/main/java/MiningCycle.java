@@ -0,0 +1,398 @@
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.MiningStrategy;
+import util.OracleHelper;
+import util.RedoSink;
+import util.SqlUtils;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一个挖掘周期: add log file -> start log miner -> (query contents) -> end log miner
+ *
+ * <p>
+ * 数据字典在第一次挖掘前构建. 数据字典在 redo 中时, 只添加 startScn 之后的日志, 因此窗口的 startScn 超过上次构建时的 scn 后
+ * (例如守护进程的后续作业) 会重新构建, 否则添加的日志中没有数据字典, START_LOGMNR 失败.
+ * 某个阶段超时或失败时不抛出异常, 而是记录在返回的 {@link CycleResult} 中.
+ *
+ * @author zhul
+ */
+public class MiningCycle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MiningCycle.class);
+
+    private static final Logger LOGGER_REDO_SQL = LoggerFactory.getLogger("REDO_SQL");
+
+    private static final int PROFILE_FETCH_SIZE = Integer.getInteger("logminer.profile.fetch.size", 10000);
+
+    private final OracleConnection connection;
+    private final LogFileCatalog logFileCatalog;
+    private final StatementWatchdog statementWatchdog;
+    private final MiningStrategy strategy;
+    private final ThreadParallelMiner parallelMiner;
+
+    /**
+     * 最近一次构建数据字典之前的当前 scn, 未构建时为 -1
+     */
+    private long dataDictionaryScn = -1;
+    private RedoSink redoSink;
+    private ContentsProfiler contentsProfiler;
+    private MetadataQueries metadataQueries;
+    private ResultsStore resultsStore;
+
+    /**
+     * @param parallelMiner 不为 null 时, 按 redo thread 并行挖掘
+     */
+    public MiningCycle(
+            OracleConnection connection,
+            LogFileCatalog logFileCatalog,
+            StatementWatchdog statementWatchdog,
+            MiningStrategy strategy,
+            ThreadParallelMiner parallelMiner
+    ) {
+        this.connection = connection;
+        this.logFileCatalog = logFileCatalog;
+        this.statementWatchdog = statementWatchdog;
+        this.strategy = strategy;
+        this.parallelMiner = parallelMiner;
+    }
+
+    /**
+     * 设置后, 每个周期的结果都会追加到 resultsStore
+     */
+    public void setResultsStore(ResultsStore resultsStore) {
+        this.resultsStore = resultsStore;
+    }
+
+    /**
+     * 设置后, 添加日志文件阶段中互不依赖的元数据查询在 metadataQueries 的连接上并发执行, 默认在挖掘连接上串行执行
+     */
+    public void setMetadataQueries(MetadataQueries metadataQueries) {
+        this.metadataQueries = metadataQueries;
+    }
+
+    /**
+     * 设置后, 查询 V$LOGMNR_CONTENTS 时 SQL_REDO 流式写入 sink, 交给 rowConsumer 的行中不再包含 SQL_REDO
+     */
+    public void setRedoSink(RedoSink redoSink) {
+        this.redoSink = redoSink;
+        if (parallelMiner != null) {
+            parallelMiner.setRedoSink(redoSink);
+        }
+    }
+
+    /**
+     * 设置后, 查询 V$LOGMNR_CONTENTS 阶段改为执行分析查询, 结果交给 profiler 累加, 不再调用 rowConsumer.
+     * 只支持串行挖掘
+     */
+    public void setContentsProfiler(ContentsProfiler contentsProfiler) {
+        if (contentsProfiler != null && parallelMiner != null) {
+            throw new IllegalStateException("Contents profiling is not supported when mining threads in parallel");
+        }
+        this.contentsProfiler = contentsProfiler;
+    }
+
+    /**
+     * 挖掘 [startScn, endScn], 添加的日志文件覆盖到 endScn + scnBatch.
+     *
+     * @param maxLogFiles   最多添加的日志文件数, 0 表示不限制. 文件数被限制时, 实际挖掘的 endScn 会收缩到这些文件覆盖的范围.
+     *                      数据字典在 redo 中时不支持限制, 见 {@link #supportsLogFileLimit()}
+     * @param rowConsumer   不为 null 时查询 V$LOGMNR_CONTENTS 并把每一行交给它
+     * @param beforeEnd     不为 null 时, 在数据处理完成之后, 结束挖掘会话之前调用, 用来记录检查点.
+     *                      它抛出的 IOException 在结束挖掘会话之后重新抛出
+     */
+    public CycleResult mine(
+            long startScn,
+            long endScn,
+            long scnBatch,
+            int maxLogFiles,
+            ThreadParallelMiner.RowConsumer rowConsumer,
+            BeforeEndCallback beforeEnd
+    ) throws IOException {
+        LOGGER.info("Mining window startScn={}, endScn={}", startScn, endScn);
+        CycleResult result = new CycleResult(startScn, endScn);
+        if (maxLogFiles > 0 && !supportsLogFileLimit()) {
+            result.recordFailure(MiningPhase.SET_LOG_FILES, new IllegalArgumentException(
+                    "Log files can not be limited when the dictionary is read from redo logs, strategy=" + strategy));
+            LOGGER.error("{}", result);
+            return result;
+        }
+        MiningPhase phase = MiningPhase.BUILD_DICTIONARY;
+        try {
+            if (parallelMiner != null) {
+                phase = MiningPhase.MINE_THREADS_IN_PARALLEL;
+                mineThreadsInParallel(startScn, endScn, scnBatch, rowConsumer, result);
+                if (beforeEnd != null) {
+                    beforeEnd.call(result);
+                }
+            } else {
+                if (needsDataDictionary(startScn)) {
+                    buildDataDictionary(result);
+                }
+                phase = MiningPhase.SET_LOG_FILES;
+                long minedEndScn = setLogFilesForMining(startScn, endScn, scnBatch, maxLogFiles, result);
+                phase = MiningPhase.START_LOGMNR;
+                startMiningSession(startScn, minedEndScn, result);
+                if (contentsProfiler != null) {
+                    phase = MiningPhase.QUERY_CONTENTS;
+                    profileLogMinerContents(startScn, minedEndScn, result);
+                } else if (rowConsumer != null) {
+                    phase = MiningPhase.QUERY_CONTENTS;
+                    queryLogMinerContents(startScn, minedEndScn, rowConsumer, result);
+                }
+                result.setPgaMaxBytes(OracleHelper.getMetric(connection.connection(), "session pga memory max"));
+                if (beforeEnd != null) {
+                    beforeEnd.call(result);
+                }
+                phase = MiningPhase.END_LOGMNR;
+                endMiningSession(result);
+            }
+        } catch (SQLException | RuntimeException e) {
+            // 例如 start scn 早于可用的日志时, 选择日志文件会抛出 IllegalStateException
+            LOGGER.error("Phase {} of window [{}, {}] failed", phase, startScn, endScn, e);
+            result.recordFailure(phase, e);
+            if (result.getStatus() == CycleResult.Status.TIMEOUT && phase != MiningPhase.MINE_THREADS_IN_PARALLEL) {
+                // 语句被取消或会话被 kill 之后会话状态不可靠, 关闭连接, 下一个周期会重新连接
+                closeConnectionQuietly();
+            } else if (phase == MiningPhase.START_LOGMNR || phase == MiningPhase.QUERY_CONTENTS) {
+                endMiningSessionQuietly();
+            }
+        } catch (IOException e) {
+            // beforeEnd (检查点, sink flush) 失败: 同样结束挖掘会话, 再向上抛出, 调用方不能把这个窗口当作已处理
+            LOGGER.error("Phase {} of window [{}, {}] failed before ending the mining session", phase, startScn, endScn, e);
+            result.recordFailure(phase, e);
+            if (parallelMiner == null) {
+                endMiningSessionQuietly();
+            }
+            try {
+                record(result);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        record(result);
+        return result;
+    }
+
+    private void record(CycleResult result) throws IOException {
+        LOGGER.info("{}", result);
+        if (resultsStore != null) {
+            resultsStore.append(result, strategy);
+        }
+    }
+
+    public MiningStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * 数据字典在 redo 中时, 最近一次构建的字典在最新的日志里, 限制日志文件数会把它们去掉, START_LOGMNR 必然失败
+     */
+    public boolean supportsLogFileLimit() {
+        return !strategy.isDictionaryInRedoLogs();
+    }
+
+    private boolean needsDataDictionary(long startScn) {
+        if (strategy.buildDictionaryStatement() == null) {
+            return false;
+        }
+        if (dataDictionaryScn < 0) {
+            return true;
+        }
+        return strategy.isDictionaryInRedoLogs() && startScn > dataDictionaryScn;
+    }
+
+    public void buildDataDictionary(CycleResult result) throws SQLException {
+        LOGGER.info("Building data dictionary");
+        Instant start = Instant.now();
+        long scn = LogMinerHelper.getCurrentScn(connection);
+        // connection.executeWithoutCommitting("create directory my_dictionary_dir_2 as ''");
+        statementWatchdog.execute(connection, MiningPhase.BUILD_DICTIONARY, strategy.buildDictionaryStatement());
+        dataDictionaryScn = scn;
+        Duration cost = Duration.between(start, Instant.now());
+        result.recordDuration(MiningPhase.BUILD_DICTIONARY, cost);
+        LOGGER.info("Build data dictionary at scn {} cost {}", scn, cost);
+    }
+
+    /**
+     * @return 实际挖掘的 endScn, 日志文件数被限制时小于 endScn
+     */
+    private long setLogFilesForMining(long startScn, long endScn, long scnBatch, int maxLogFiles, CycleResult result)
+            throws SQLException {
+        Instant start = Instant.now();
+        // 数据字典在 redo 中时需要添加 start scn 之后的所有日志, 才能包含最近一次构建的字典
+        long logFilesEndScn = strategy.isDictionaryInRedoLogs() ? Long.MAX_VALUE : endScn + scnBatch;
+        Map<String, Long> logFileBytes = new HashMap<>();
+        List<LogFile> logFiles = LogMinerHelper.setLogFilesForMining(
+                connection, metadataQueries, logFileCatalog, startScn, logFilesEndScn, maxLogFiles, false, logFileBytes);
+        Duration cost = Duration.between(start, Instant.now());
+        long minedEndScn = Math.min(endScn, LogMinerHelper.getCoveredEndScn(logFiles));
+        result.setMinedEndScn(minedEndScn);
+        result.setLogFileCount(logFiles.size());
+        result.setLogFileBytes(LogMinerHelper.getLogFileBytes(logFiles, logFileBytes, startScn, minedEndScn));
+        result.recordDuration(MiningPhase.SET_LOG_FILES, cost);
+        LOGGER.info("Set log files for mining cost {}", cost);
+        return minedEndScn;
+    }
+
+    public void startMiningSession(long startScn, long endScn, CycleResult result) throws SQLException {
+        LOGGER.info("Starting mining session startScn={}, endScn={}, strategy={}", startScn, endScn, strategy);
+        Instant start = Instant.now();
+        statementWatchdog.execute(connection, MiningPhase.START_LOGMNR,
+                strategy.startLogMinerStatement(startScn, endScn));
+        Duration cost = Duration.between(start, Instant.now());
+        result.recordDuration(MiningPhase.START_LOGMNR, cost);
+        result.setPgaBytes(OracleHelper.getMetric(connection.connection(), "session pga memory"));
+        LOGGER.info("Start mining session cost {}", cost);
+    }
+
+    private void queryLogMinerContents(
+            long startScn,
+            long endScn,
+            ThreadParallelMiner.RowConsumer rowConsumer,
+            CycleResult result
+    ) throws SQLException {
+        LOGGER.info("Query log miner contents");
+        LOGGER_REDO_SQL.info("========== Start query log miner contents ==========");
+        Instant now = Instant.now();
+        try (PreparedStatement statement = createQueryStatement();
+             StatementWatchdog.Guard guard = statementWatchdog.guard(connection.connection(), MiningPhase.QUERY_CONTENTS, statement)) {
+            statement.setFetchSize(8192);
+            statement.setFetchDirection(ResultSet.FETCH_FORWARD);
+            statement.setString(1, String.valueOf(startScn));
+            statement.setString(2, String.valueOf(endScn));
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                int count = 0;
+                while (resultSet.next()) {
+                    count++;
+                    rowConsumer.accept(redoSink == null
+                            ? LogMinerRow.from(resultSet, 0)
+                            : LogMinerRow.from(resultSet, 0, redoSink));
+                }
+                LOGGER_REDO_SQL.info("{} redo log records fetched", count);
+            } catch (SQLException e) {
+                throw guard.translate(e);
+            }
+        }
+        flushRedoSink();
+        Duration cost = Duration.between(now, Instant.now());
+        result.recordDuration(MiningPhase.QUERY_CONTENTS, cost);
+        LOGGER.info("Query log miner contents cost {}, see redo sql log files to know more details", cost);
+        LOGGER_REDO_SQL.info("========== End query log miner contents ==========\n");
+    }
+
+    private void profileLogMinerContents(long startScn, long endScn, CycleResult result) throws SQLException {
+        LOGGER.info("Profiling log miner contents");
+        Instant now = Instant.now();
+        try (PreparedStatement statement = createQueryStatement(SqlUtils.profileLogMinerContents(contentsProfiler.isRedoBytes()));
+             StatementWatchdog.Guard guard = statementWatchdog.guard(connection.connection(), MiningPhase.QUERY_CONTENTS, statement)) {
+            statement.setFetchSize(PROFILE_FETCH_SIZE);
+            statement.setFetchDirection(ResultSet.FETCH_FORWARD);
+            statement.setString(1, String.valueOf(startScn));
+            statement.setString(2, String.valueOf(endScn));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                contentsProfiler.consume(resultSet);
+            } catch (SQLException e) {
+                throw guard.translate(e);
+            }
+        }
+        Duration cost = Duration.between(now, Instant.now());
+        result.recordDuration(MiningPhase.QUERY_CONTENTS, cost);
+        LOGGER.info("Profile log miner contents cost {}", cost);
+    }
+
+    private PreparedStatement createQueryStatement() throws SQLException {
+        return createQueryStatement(SqlUtils.queryLogMinerContents());
+    }
+
+    private PreparedStatement createQueryStatement(String sql) throws SQLException {
+        return connection.connection().prepareStatement(
+                sql,
+                ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY,
+                ResultSet.HOLD_CURSORS_OVER_COMMIT
+        );
+    }
+
+    private void mineThreadsInParallel(
+            long startScn,
+            long endScn,
+            long scnBatch,
+            ThreadParallelMiner.RowConsumer rowConsumer,
+            CycleResult result
+    ) throws SQLException {
+        Instant start = Instant.now();
+        List<LogFile> logFiles = LogMinerHelper.getLogFilesForMining(connection, logFileCatalog, startScn, endScn + scnBatch, false);
+        LOGGER_REDO_SQL.info("========== Start query log miner contents ==========");
+        long count = parallelMiner.mine(LogMinerHelper.groupByThread(logFiles), startScn, endScn,
+                rowConsumer == null ? row -> { } : rowConsumer);
+        LOGGER_REDO_SQL.info("{} redo log records fetched", count);
+        LOGGER_REDO_SQL.info("========== End query log miner contents ==========\n");
+        flushRedoSink();
+        result.setLogFileCount(logFiles.size());
+        result.recordDuration(MiningPhase.MINE_THREADS_IN_PARALLEL, Duration.between(start, Instant.now()));
+    }
+
+    private void flushRedoSink() throws SQLException {
+        if (redoSink != null) {
+            try {
+                redoSink.flush();
+            } catch (IOException e) {
+                throw new SQLException("Failed to flush SQL_REDO sink", e);
+            }
+        }
+        SqlUtils.redoReassembler().logMetrics();
+    }
+
+    public void endMiningSession(CycleResult result) throws SQLException {
+        Instant now = Instant.now();
+        try {
+            LOGGER.info("Ending mining session");
+            statementWatchdog.execute(connection, MiningPhase.END_LOGMNR, "BEGIN SYS.DBMS_LOGMNR.END_LOGMNR(); END;");
+        } catch (SQLException e) {
+            if (e.getMessage().toUpperCase().contains("ORA-01307")) {
+                LOGGER.info("LogMiner mining session is already closed.");
+                return;
+            }
+            // LogMiner failed to terminate properly, a restart of the connector will be required.
+            throw e;
+        }
+        Duration cost = Duration.between(now, Instant.now());
+        result.recordDuration(MiningPhase.END_LOGMNR, cost);
+        LOGGER.info("Ending mining session cost {}", cost);
+    }
+
+    private void endMiningSessionQuietly() {
+        try {
+            statementWatchdog.execute(connection, MiningPhase.END_LOGMNR, "BEGIN SYS.DBMS_LOGMNR.END_LOGMNR(); END;");
+        } catch (PhaseTimeoutException e) {
+            LOGGER.warn("Failed to end mining session after failure: {}", e.getMessage());
+            closeConnectionQuietly();
+        } catch (SQLException e) {
+            LOGGER.warn("Failed to end mining session after failure: {}", e.getMessage());
+        }
+    }
+
+    private void closeConnectionQuietly() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOGGER.warn("Failed to close connection after timeout: {}", e.getMessage());
+        }
+    }
+
+    @FunctionalInterface
+    public interface BeforeEndCallback {
+        void call(CycleResult result) throws IOException;
+    }
+}
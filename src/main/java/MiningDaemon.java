@@ -0,0 +1,312 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 守护进程模式: 连接, 数据字典, 日志文件目录以及 JIT 在多个挖掘作业之间保持热状态
+ *
+ * <p>
+ * 通过本地 HTTP 接口 (JDK 内置的 {@link HttpServer}) 提交作业, 作业按提交顺序在同一个挖掘线程中依次执行:
+ * <ul>
+ *     <li>POST /jobs?start=&lt;scn&gt;&amp;end=&lt;scn&gt;[&amp;batch=&lt;scn&gt;][&amp;files=&lt;n&gt;][&amp;contents=true]: 提交作业, 返回作业 id</li>
+ *     <li>GET /jobs/&lt;id&gt;: 查询作业状态和结果</li>
+ *     <li>GET /metrics: Prometheus 文本格式的指标, 见 {@link DaemonMetrics}</li>
+ *     <li>POST /shutdown: 执行完已提交的作业后退出</li>
+ * </ul>
+ * 只监听 127.0.0.1, 端口由 -Dlogminer.daemon.port 指定 (默认 9464). 失败的作业记录错误信息, 不影响后续作业.
+ * <p>
+ * 数据字典在 redo 中 (默认) 时, 作业的 start 超过上次构建数据字典的 scn 后会重新构建, 见 {@link MiningCycle}.
+ *
+ * @author zhul
+ */
+public class MiningDaemon {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MiningDaemon.class);
+
+    private static final int MAX_RETAINED_JOBS = 1000;
+
+    private final MiningCycle miningCycle;
+    private final ScnProbe scnProbe;
+    private final int port;
+    private final DaemonMetrics metrics = new DaemonMetrics();
+
+    private final BlockingQueue<Job> queue = new LinkedBlockingQueue<>();
+    private final Map<Long, Job> jobs = new LinkedHashMap<Long, Job>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Job> eldest) {
+            return size() > MAX_RETAINED_JOBS;
+        }
+    };
+    private final AtomicLong nextJobId = new AtomicLong(1);
+    private volatile boolean running = true;
+
+    /**
+     * @param scnProbe 每个作业之后用来查询当前 scn 计算延迟
+     */
+    public MiningDaemon(MiningCycle miningCycle, ScnProbe scnProbe, int port) {
+        this.miningCycle = miningCycle;
+        this.scnProbe = scnProbe;
+        this.port = port;
+    }
+
+    /**
+     * 启动 HTTP 服务并在当前线程中执行作业, 直到收到 /shutdown
+     */
+    public void run() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/jobs", this::handleJobs);
+        server.createContext("/metrics", exchange -> {
+            drainRequest(exchange);
+            respond(exchange, 200, "text/plain; version=0.0.4", metrics.toPrometheus());
+        });
+        server.createContext("/shutdown", exchange -> {
+            drainRequest(exchange);
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "text/plain", "POST required\n");
+                return;
+            }
+            running = false;
+            queue.offer(Job.SHUTDOWN);
+            respond(exchange, 200, "text/plain", "shutting down\n");
+        });
+        server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "daemon-http");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        LOGGER.info("Mining daemon listening on http://127.0.0.1:{}", port);
+        try {
+            mineLoop();
+        } finally {
+            server.stop(0);
+            LOGGER.info("Mining daemon stopped");
+        }
+    }
+
+    private void mineLoop() {
+        while (true) {
+            Job job;
+            try {
+                job = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (job == Job.SHUTDOWN) {
+                if (queue.isEmpty()) {
+                    return;
+                }
+                // 关闭请求之前提交的作业仍然执行
+                queue.offer(job);
+                continue;
+            }
+            metrics.jobDequeued();
+            job.state = "running";
+            LOGGER.info("Running job {}: [{}, {}]", job.id, job.startScn, job.endScn);
+            ThreadParallelMiner.RowConsumer rowConsumer = job.queryContents ? row -> metrics.incrementRows() : null;
+            CycleResult result;
+            try {
+                result = miningCycle.mine(job.startScn, job.endScn, job.scnBatch, job.maxLogFiles, rowConsumer, null);
+            } catch (IOException | RuntimeException e) {
+                // 单个作业失败不影响守护进程, 继续执行后续作业
+                LOGGER.error("Job {} failed", job.id, e);
+                job.error = e.toString();
+                job.state = "failed";
+                continue;
+            }
+            metrics.recordCycle(result);
+            try {
+                metrics.recordCurrentScn(scnProbe.currentScn());
+            } catch (SQLException e) {
+                LOGGER.warn("Failed to get current scn for lag: {}", e.getMessage());
+            }
+            job.result = result;
+            job.state = "done";
+        }
+    }
+
+    private void handleJobs(HttpExchange exchange) throws IOException {
+        drainRequest(exchange);
+        String path = exchange.getRequestURI().getPath();
+        if ("POST".equals(exchange.getRequestMethod()) && ("/jobs".equals(path) || "/jobs/".equals(path))) {
+            submit(exchange);
+            return;
+        }
+        if ("GET".equals(exchange.getRequestMethod()) && path.startsWith("/jobs/")) {
+            Job job;
+            try {
+                long id = Long.parseLong(path.substring("/jobs/".length()));
+                synchronized (jobs) {
+                    job = jobs.get(id);
+                }
+            } catch (NumberFormatException e) {
+                job = null;
+            }
+            if (job == null) {
+                respond(exchange, 404, "text/plain", "job not found\n");
+            } else {
+                respond(exchange, 200, "application/json", job.toJson());
+            }
+            return;
+        }
+        respond(exchange, 405, "text/plain", "POST /jobs or GET /jobs/<id>\n");
+    }
+
+    private void submit(HttpExchange exchange) throws IOException {
+        if (!running) {
+            respond(exchange, 503, "text/plain", "daemon is shutting down\n");
+            return;
+        }
+        Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+        Job job;
+        try {
+            long startScn = Long.parseLong(params.get("start"));
+            long endScn = Long.parseLong(params.get("end"));
+            if (endScn <= startScn) {
+                throw new IllegalArgumentException("end must be greater than start");
+            }
+            int maxLogFiles = Integer.parseInt(params.getOrDefault("files", "0"));
+            if (maxLogFiles > 0 && !miningCycle.supportsLogFileLimit()) {
+                throw new IllegalArgumentException("files is not supported when the dictionary is read from redo logs");
+            }
+            job = new Job(nextJobId.getAndIncrement(), startScn, endScn,
+                    Long.parseLong(params.getOrDefault("batch", "0")),
+                    maxLogFiles,
+                    Boolean.parseBoolean(params.get("contents")));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            respond(exchange, 400, "text/plain", "invalid job: " + e.getMessage() + "\n");
+            return;
+        }
+        synchronized (jobs) {
+            jobs.put(job.id, job);
+        }
+        metrics.jobQueued();
+        queue.offer(job);
+        LOGGER.info("Job {} queued: [{}, {}]", job.id, job.startScn, job.endScn);
+        respond(exchange, 202, "application/json", job.toJson());
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+                        URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+        }
+        return params;
+    }
+
+    private static void drainRequest(HttpExchange exchange) throws IOException {
+        byte[] buffer = new byte[1024];
+        while (exchange.getRequestBody().read(buffer) >= 0) {
+            // 请求体不使用, 读完即可
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static class Job {
+
+        static final Job SHUTDOWN = new Job(0, 0, 0, 0, 0, false);
+
+        private final long id;
+        private final long startScn;
+        private final long endScn;
+        private final long scnBatch;
+        private final int maxLogFiles;
+        private final boolean queryContents;
+        private volatile String state = "queued";
+        private volatile CycleResult result;
+        private volatile String error;
+
+        Job(long id, long startScn, long endScn, long scnBatch, int maxLogFiles, boolean queryContents) {
+            this.id = id;
+            this.startScn = startScn;
+            this.endScn = endScn;
+            this.scnBatch = scnBatch;
+            this.maxLogFiles = maxLogFiles;
+            this.queryContents = queryContents;
+        }
+
+        String toJson() {
+            StringBuilder json = new StringBuilder(256);
+            json.append("{\"id\":").append(id)
+                    .append(",\"state\":\"").append(state).append('"')
+                    .append(",\"startScn\":").append(startScn)
+                    .append(",\"endScn\":").append(endScn);
+            CycleResult result = this.result;
+            if (result != null) {
+                json.append(",\"status\":\"").append(result.getStatus()).append('"')
+                        .append(",\"minedEndScn\":").append(result.getMinedEndScn())
+                        .append(",\"logFiles\":").append(result.getLogFileCount())
+                        .append(",\"pgaBytes\":").append(result.getPgaBytes())
+                        .append(",\"scnPerSecond\":").append(Math.round(result.getScnPerSecond()))
+                        .append(",\"durationsMs\":{");
+                boolean first = true;
+                for (Map.Entry<MiningPhase, Duration> entry : result.getDurations().entrySet()) {
+                    json.append(first ? "" : ",").append('"').append(entry.getKey().getKey()).append("\":")
+                            .append(entry.getValue().toMillis());
+                    first = false;
+                }
+                json.append('}');
+                if (result.getFailedPhase() != null) {
+                    json.append(",\"failedPhase\":\"").append(result.getFailedPhase().getKey()).append('"');
+                }
+                if (result.getMessage() != null) {
+                    json.append(",\"message\":");
+                    appendString(json, result.getMessage());
+                }
+            }
+            if (error != null) {
+                json.append(",\"error\":");
+                appendString(json, error);
+            }
+            return json.append("}\n").toString();
+        }
+
+        private static void appendString(StringBuilder json, String value) {
+            json.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    json.append('\\').append(c);
+                } else if (c < ' ') {
+                    json.append(String.format("\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+            }
+            json.append('"');
+        }
+    }
+}
@@ -0,0 +1,34 @@
+import java.time.Duration;
+
+/**
+ * 一个挖掘周期中的各个阶段
+ *
+ * <p>
+ * 每个阶段可以通过 -Dlogminer.timeout.&lt;key&gt;.ms 指定时间预算, 0 表示不限制.
+ * 目前只有由单条语句执行的阶段 (build, start, query, end) 支持超时控制. 按 redo thread 并行挖掘时, 各会话的
+ * start, query, end 语句同样受对应阶段的预算约束, 同时整个并行挖掘受 parallel 的预算约束.
+ *
+ * @author zhul
+ */
+public enum MiningPhase {
+    BUILD_DICTIONARY("build"),
+    SET_LOG_FILES("addfile"),
+    START_LOGMNR("start"),
+    QUERY_CONTENTS("query"),
+    END_LOGMNR("end"),
+    MINE_THREADS_IN_PARALLEL("parallel");
+
+    private final String key;
+
+    MiningPhase(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public Duration getTimeout() {
+        return Duration.ofMillis(Long.getLong("logminer.timeout." + key + ".ms", 0L));
+    }
+}
@@ -0,0 +1,237 @@
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.CurveFit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 参数扫描模式: 在一组几何级数的窗口大小和日志文件数上重复挖掘周期, 找出吞吐量 (scn/s) 最高的窗口大小
+ *
+ * <p>
+ * 可以通过以下参数控制扫描范围:
+ * <ul>
+ *     <li>-Dlogminer.sweep.window.min / max / factor: 窗口大小, 默认从 10000 开始每次乘 2, 直到 end-scn - start-scn.
+ *     min 必须大于 0, factor 必须大于 1</li>
+ *     <li>-Dlogminer.sweep.files.min / max / factor: 添加的日志文件数, 默认 0, 即不限制. factor 必须大于 1,
+ *     数据字典在 redo 中时不能限制文件数</li>
+ *     <li>-Dlogminer.sweep.repeat: 每个组合重复的次数, 默认 1</li>
+ *     <li>-Dlogminer.sweep.pga.ceiling.mb: 挖掘会话 PGA 上限, 超过上限的窗口不会被推荐, 默认 0, 即不限制</li>
+ * </ul>
+ * 某个组合超时或失败后, 同一文件数下更大的窗口不再尝试.
+ * <p>
+ * 每个文件数下以 ln(窗口大小) 为自变量对吞吐量做二次拟合, 在 PGA 上限允许的范围内取拟合曲线的最大值,
+ * 拟合失败或曲线没有极大值时退化为取实际测得的最优点.
+ *
+ * @author zhul
+ */
+public class ParameterSweep {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParameterSweep.class);
+
+    private static final long MB = 1024 * 1024;
+
+    private final MiningCycle miningCycle;
+    private final long startScn;
+    private final long endScn;
+    private final long scnBatch;
+
+    private final long minWindow = Long.getLong("logminer.sweep.window.min", 10000L);
+    private final long maxWindow;
+    private final double windowFactor = Double.parseDouble(System.getProperty("logminer.sweep.window.factor", "2"));
+    private final int minFiles = Integer.getInteger("logminer.sweep.files.min", 0);
+    private final int maxFiles = Integer.getInteger("logminer.sweep.files.max", 0);
+    private final double filesFactor = Double.parseDouble(System.getProperty("logminer.sweep.files.factor", "2"));
+    private final int repeat = Integer.getInteger("logminer.sweep.repeat", 1);
+    private final long pgaCeilingBytes = Long.getLong("logminer.sweep.pga.ceiling.mb", 0L) * MB;
+
+    public ParameterSweep(MiningCycle miningCycle, long startScn, long endScn, long scnBatch) {
+        this.miningCycle = miningCycle;
+        this.startScn = startScn;
+        this.endScn = endScn;
+        this.scnBatch = scnBatch;
+        this.maxWindow = Long.getLong("logminer.sweep.window.max", endScn - startScn);
+        if (minWindow <= 0 || windowFactor <= 1) {
+            throw new IllegalArgumentException("logminer.sweep.window.min must be positive and logminer.sweep.window.factor "
+                    + "must be greater than 1, got min=" + minWindow + ", factor=" + windowFactor);
+        }
+        if (minFiles > 0 && maxFiles > 0) {
+            if (filesFactor <= 1) {
+                throw new IllegalArgumentException("logminer.sweep.files.factor must be greater than 1, got " + filesFactor);
+            }
+            if (!miningCycle.supportsLogFileLimit()) {
+                throw new IllegalArgumentException("logminer.sweep.files.min/max require a dictionary that is not read "
+                        + "from redo logs, strategy=" + miningCycle.getStrategy());
+            }
+        }
+    }
+
+    public List<CycleResult> run() throws IOException {
+        List<Long> windows = windowSizes();
+        List<Integer> fileCounts = fileCounts();
+        LOGGER.info("Sweeping window sizes {} with log file counts {}, {} runs each", windows, fileCounts, repeat);
+
+        Map<Integer, List<CycleResult>> resultsByFiles = new LinkedHashMap<>();
+        for (int files : fileCounts) {
+            List<CycleResult> results = new ArrayList<>();
+            resultsByFiles.put(files, results);
+            windowLoop:
+            for (long window : windows) {
+                for (int i = 0; i < repeat; i++) {
+                    CycleResult result = miningCycle.mine(startScn, startScn + window, scnBatch, files, null, null);
+                    results.add(result);
+                    if (!result.isOk()) {
+                        LOGGER.warn("Window {} with {} log files ended with {}, larger windows are skipped",
+                                window, files == 0 ? "all" : files, result.getStatus());
+                        break windowLoop;
+                    }
+                    if (pgaCeilingBytes > 0 && result.getPgaBytes() > pgaCeilingBytes) {
+                        LOGGER.warn("Window {} with {} log files exceeded the PGA ceiling, larger windows are skipped",
+                                window, files == 0 ? "all" : files);
+                        break windowLoop;
+                    }
+                }
+            }
+        }
+
+        printResults(resultsByFiles);
+        recommend(resultsByFiles);
+
+        List<CycleResult> all = new ArrayList<>();
+        resultsByFiles.values().forEach(all::addAll);
+        return all;
+    }
+
+    private List<Long> windowSizes() {
+        List<Long> windows = new ArrayList<>();
+        for (double window = minWindow; window < maxWindow; window *= windowFactor) {
+            windows.add((long) window);
+        }
+        windows.add(maxWindow);
+        return windows;
+    }
+
+    private List<Integer> fileCounts() {
+        List<Integer> fileCounts = new ArrayList<>();
+        if (minFiles <= 0 || maxFiles <= 0) {
+            fileCounts.add(0);
+            return fileCounts;
+        }
+        for (double files = minFiles; files < maxFiles; files *= filesFactor) {
+            fileCounts.add((int) files);
+        }
+        fileCounts.add(maxFiles);
+        return fileCounts;
+    }
+
+    private void printResults(Map<Integer, List<CycleResult>> resultsByFiles) {
+        LOGGER.info("========== Sweep results ==========");
+        LOGGER.info(String.format("%8s %12s %12s %8s %12s %12s %10s %10s",
+                "files", "window", "mined", "status", "start(ms)", "total(ms)", "scn/s", "pga(MB)"));
+        resultsByFiles.forEach((files, results) -> {
+            for (CycleResult result : results) {
+                LOGGER.info(String.format("%8s %12d %12d %8s %12d %12d %10.0f %10d",
+                        files == 0 ? "all" : String.valueOf(files),
+                        result.getEndScn() - result.getStartScn(),
+                        result.getMinedEndScn() - result.getStartScn(),
+                        result.getStatus(),
+                        result.getDuration(MiningPhase.START_LOGMNR).toMillis(),
+                        result.getTotalDuration().toMillis(),
+                        result.getScnPerSecond(),
+                        result.getPgaBytes() / MB));
+            }
+        });
+    }
+
+    private void recommend(Map<Integer, List<CycleResult>> resultsByFiles) {
+        Recommendation best = null;
+        for (Map.Entry<Integer, List<CycleResult>> entry : resultsByFiles.entrySet()) {
+            Recommendation recommendation = recommend(entry.getKey(), entry.getValue());
+            if (recommendation != null && (best == null || recommendation.scnPerSecond > best.scnPerSecond)) {
+                best = recommendation;
+            }
+        }
+        if (best == null) {
+            LOGGER.warn("No successful cycle within the PGA ceiling, no window size can be recommended");
+            return;
+        }
+        LOGGER.info("Recommended window size: {} scn with {} log files, expected {} scn/s ({})",
+                best.window, best.files == 0 ? "all" : best.files, String.format("%.0f", best.scnPerSecond), best.source);
+    }
+
+    private Recommendation recommend(int files, List<CycleResult> results) {
+        List<CycleResult> ok = new ArrayList<>();
+        for (CycleResult result : results) {
+            if (result.isOk() && result.getMinedEndScn() > result.getStartScn()) {
+                ok.add(result);
+            }
+        }
+        if (ok.isEmpty()) {
+            return null;
+        }
+        double[] x = new double[ok.size()];
+        double[] y = new double[ok.size()];
+        double[] windows = new double[ok.size()];
+        double[] pga = new double[ok.size()];
+        double minX = Double.MAX_VALUE;
+        double maxX = 0;
+        for (int i = 0; i < ok.size(); i++) {
+            CycleResult result = ok.get(i);
+            windows[i] = result.getMinedEndScn() - result.getStartScn();
+            x[i] = Math.log(windows[i]);
+            y[i] = result.getScnPerSecond();
+            pga[i] = result.getPgaBytes();
+            minX = Math.min(minX, x[i]);
+            maxX = Math.max(maxX, x[i]);
+        }
+
+        double upperX = maxX;
+        if (pgaCeilingBytes > 0) {
+            double[] pgaFit = CurveFit.linear(windows, pga);
+            if (pgaFit != null && pgaFit[1] > 0) {
+                double maxWindowByPga = (pgaCeilingBytes - pgaFit[0]) / pgaFit[1];
+                upperX = maxWindowByPga <= 1 ? minX : Math.min(upperX, Math.log(maxWindowByPga));
+            }
+        }
+
+        double[] fit = CurveFit.quadratic(x, y);
+        if (fit != null && fit[2] < 0 && upperX >= minX) {
+            double peakX = Math.max(minX, Math.min(upperX, -fit[1] / (2 * fit[2])));
+            double predicted = fit[0] + fit[1] * peakX + fit[2] * peakX * peakX;
+            LOGGER.info("Throughput fit for {} log files: scn/s = {} + {} * ln(w) + {} * ln(w)^2",
+                    files == 0 ? "all" : files, fit[0], fit[1], fit[2]);
+            return new Recommendation(files, Math.round(Math.exp(peakX)), predicted, "fitted");
+        }
+
+        CycleResult best = null;
+        for (CycleResult result : ok) {
+            if (pgaCeilingBytes > 0 && result.getPgaBytes() > pgaCeilingBytes) {
+                continue;
+            }
+            if (best == null || result.getScnPerSecond() > best.getScnPerSecond()) {
+                best = result;
+            }
+        }
+        return best == null
+                ? null
+                : new Recommendation(files, best.getMinedEndScn() - best.getStartScn(), best.getScnPerSecond(), "observed");
+    }
+
+    private static class Recommendation {
+
+        private final int files;
+        private final long window;
+        private final double scnPerSecond;
+        private final String source;
+
+        Recommendation(int files, long window, double scnPerSecond, String source) {
+            this.files = files;
+            this.window = window;
+            this.scnPerSecond = scnPerSecond;
+            this.source = source;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * 某个挖掘阶段超出了时间预算, 语句已被取消
+ *
+ * @author zhul
+ */
+public class PhaseTimeoutException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final MiningPhase phase;
+    private final Duration timeout;
+
+    public PhaseTimeoutException(MiningPhase phase, Duration timeout, SQLException cause) {
+        super("Phase " + phase + " exceeded its time budget of " + timeout, cause);
+        this.phase = phase;
+        this.timeout = timeout;
+    }
+
+    public MiningPhase getPhase() {
+        return phase;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+}
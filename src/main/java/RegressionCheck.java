@@ -0,0 +1,197 @@
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.Stats;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 对比两组运行 (基线和候选) 的挖掘性能, 找出统计上显著的退化
+ *
+ * <p>
+ * 运行按 label 或 runId 选择: -Dlogminer.compare.baseline 必须指定, -Dlogminer.compare.candidate 默认为结果存储中
+ * 最新的一次运行. 只比较成功的周期, 并且只在同一场景 (目标库, 挖掘策略, 窗口大小和日志文件数相同) 内比较,
+ * 不同数据库上的运行不会互相比较.
+ * <p>
+ * 比较的指标是 START_LOGMNR 耗时 (越大越差) 和 MB/s (越小越差). 使用 Welch t 检验的单侧 p 值,
+ * 所有场景和指标的 p 值一起做 Holm 校正, 校正后的 p &lt; -Dlogminer.compare.alpha (默认 0.05)
+ * 并且均值变化超过 -Dlogminer.compare.min.change (默认 0.05, 即 5%) 时判定为退化. 每组至少需要 2 个样本, 可以通过 sweep 的 repeat 或重复运行来增加样本.
+ *
+ * @author zhul
+ */
+public class RegressionCheck {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RegressionCheck.class);
+
+    private final List<RunRecord> records;
+
+    private final String baseline = System.getProperty("logminer.compare.baseline");
+    private final String candidate = System.getProperty("logminer.compare.candidate");
+    private final double alpha = Double.parseDouble(System.getProperty("logminer.compare.alpha", "0.05"));
+    private final double minChange = Double.parseDouble(System.getProperty("logminer.compare.min.change", "0.05"));
+
+    public RegressionCheck(List<RunRecord> records) {
+        this.records = records;
+    }
+
+    /**
+     * @return 是否发现退化
+     */
+    public boolean run() {
+        if (baseline == null) {
+            throw new IllegalArgumentException("-Dlogminer.compare.baseline=<label or run id> is required");
+        }
+        String candidateKey = candidate != null ? candidate : latestRunId();
+        Map<String, List<RunRecord>> baselineRuns = select(baseline);
+        Map<String, List<RunRecord>> candidateRuns = select(candidateKey);
+        LOGGER.info("Comparing candidate {} against baseline {}", candidateKey, baseline);
+        if (baselineRuns.isEmpty() || candidateRuns.isEmpty()) {
+            LOGGER.warn("No successful cycles found for {}", baselineRuns.isEmpty() ? baseline : candidateKey);
+            return false;
+        }
+
+        List<Comparison> comparisons = new ArrayList<>();
+        for (Map.Entry<String, List<RunRecord>> entry : baselineRuns.entrySet()) {
+            List<RunRecord> candidates = candidateRuns.get(entry.getKey());
+            if (candidates == null) {
+                continue;
+            }
+            comparisons.add(new Comparison(entry.getKey(), "start(ms)", entry.getValue(), candidates,
+                    r -> r.getPhaseMillis(MiningPhase.START_LOGMNR), true));
+            comparisons.add(new Comparison(entry.getKey(), "MB/s", entry.getValue(), candidates,
+                    RunRecord::getMegabytesPerSecond, false));
+        }
+        if (comparisons.isEmpty()) {
+            LOGGER.warn("{} and {} have no scenario (target, strategy, window and log files) in common", candidateKey, baseline);
+            return false;
+        }
+        adjustPValues(comparisons);
+
+        LOGGER.info(String.format("%-110s %-10s %5s %12s %5s %12s %8s %8s %8s  %s",
+                "scenario", "metric", "n", "baseline", "n", "candidate", "change", "p", "p(holm)", "verdict"));
+        boolean regression = false;
+        for (Comparison comparison : comparisons) {
+            regression |= comparison.report();
+        }
+        if (regression) {
+            LOGGER.warn("Significant regressions found in {} against {}", candidateKey, baseline);
+        } else {
+            LOGGER.info("No significant regression found in {} against {}", candidateKey, baseline);
+        }
+        return regression;
+    }
+
+    /**
+     * 所有场景和指标的比较一起做 Holm 校正, 控制整体的误报率, 场景很多 (例如 sweep) 时不会因为多重比较而误报
+     */
+    private static void adjustPValues(List<Comparison> comparisons) {
+        List<Comparison> tested = new ArrayList<>();
+        for (Comparison comparison : comparisons) {
+            if (!Double.isNaN(comparison.pValue)) {
+                tested.add(comparison);
+            }
+        }
+        double[] pValues = new double[tested.size()];
+        for (int i = 0; i < pValues.length; i++) {
+            pValues[i] = tested.get(i).pValue;
+        }
+        double[] adjusted = Stats.holmAdjust(pValues);
+        for (int i = 0; i < adjusted.length; i++) {
+            tested.get(i).adjustedPValue = adjusted[i];
+        }
+    }
+
+    /**
+     * 一个场景的一个指标的比较, p 值在所有比较都完成后统一校正
+     */
+    private class Comparison {
+
+        private final String scenario;
+        private final String metric;
+        private final double[] base;
+        private final double[] cand;
+        private final boolean higherIsWorse;
+        private final double pValue;
+        private double adjustedPValue = Double.NaN;
+
+        /**
+         * @param higherIsWorse 指标越大越差 (耗时) 还是越小越差 (吞吐量)
+         */
+        Comparison(String scenario, String metric, List<RunRecord> baselineRecords, List<RunRecord> candidateRecords,
+                   ToDoubleFunction<RunRecord> extractor, boolean higherIsWorse) {
+            this.scenario = scenario;
+            this.metric = metric;
+            this.base = values(baselineRecords, extractor);
+            this.cand = values(candidateRecords, extractor);
+            this.higherIsWorse = higherIsWorse;
+            this.pValue = base.length < 2 || cand.length < 2
+                    ? Double.NaN
+                    : higherIsWorse ? Stats.welchGreaterPValue(base, cand) : Stats.welchGreaterPValue(cand, base);
+        }
+
+        /**
+         * @return 是否判定为退化
+         */
+        boolean report() {
+            if (base.length == 0 || cand.length == 0) {
+                return false;
+            }
+            double baseMean = Stats.mean(base);
+            double candMean = Stats.mean(cand);
+            double change = baseMean == 0 ? 0 : (candMean - baseMean) / baseMean;
+            String p = "-";
+            String adjustedP = "-";
+            String verdict;
+            boolean regression = false;
+            if (Double.isNaN(pValue)) {
+                verdict = "insufficient samples";
+            } else {
+                p = String.format("%.4f", pValue);
+                adjustedP = String.format("%.4f", adjustedPValue);
+                double worseBy = higherIsWorse ? change : -change;
+                if (adjustedPValue < alpha && worseBy > minChange) {
+                    verdict = "REGRESSION";
+                    regression = true;
+                } else if (worseBy < -minChange) {
+                    verdict = "improved";
+                } else {
+                    verdict = "ok";
+                }
+            }
+            LOGGER.info(String.format("%-110s %-10s %5d %12.1f %5d %12.1f %+7.1f%% %8s %8s  %s",
+                    scenario, metric, base.length, baseMean, cand.length, candMean, change * 100, p, adjustedP, verdict));
+            return regression;
+        }
+    }
+
+    private static double[] values(List<RunRecord> records, ToDoubleFunction<RunRecord> extractor) {
+        return records.stream().mapToDouble(extractor).filter(v -> v >= 0).toArray();
+    }
+
+    private Map<String, List<RunRecord>> select(String key) {
+        Map<String, List<RunRecord>> byScenario = new LinkedHashMap<>();
+        for (RunRecord record : records) {
+            if ((key.equals(record.getLabel()) || key.equals(record.getRunId()))
+                    && record.getStatus() == CycleResult.Status.OK) {
+                byScenario.computeIfAbsent(record.getScenario(), s -> new ArrayList<>()).add(record);
+            }
+        }
+        return byScenario;
+    }
+
+    private String latestRunId() {
+        RunRecord latest = null;
+        for (RunRecord record : records) {
+            if (latest == null || record.getTimestamp() > latest.getTimestamp()) {
+                latest = record;
+            }
+        }
+        if (latest == null) {
+            throw new IllegalStateException("The results store is empty");
+        }
+        return latest.getRunId();
+    }
+}
@@ -0,0 +1,180 @@
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.MiningStrategy;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 基于本地文件的挖掘结果存储, 每个挖掘周期一行, 供 {@link RegressionCheck} 对比不同运行的性能
+ *
+ * <p>
+ * 格式与 {@link CheckpointStore} 相同: 只追加写, 字段以 tab 分隔, 行尾带 crc32, 损坏的行在读取时被忽略.
+ * 各阶段耗时以微秒记录为 key=value 列表, 例如 build=1200,addfile=35000,start=4100000.
+ * 日志文件字节数只统计与挖掘窗口重叠的文件 (包括在线日志), 与此前只统计全部归档日志的 v1 记录不可比较, v1 记录在读取时被忽略.
+ * <p>
+ * 同一次运行的记录使用相同的 runId (启动时间), label 由 -Dlogminer.results.label 指定, 默认与 runId 相同,
+ * 用来在对比时选择一组运行, 例如 before-patch / after-patch.
+ *
+ * @author zhul
+ */
+public class ResultsStore implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResultsStore.class);
+
+    private static final String VERSION = "v2";
+
+    private static final char SEPARATOR = '\t';
+
+    private static final int FIELDS = 15;
+
+    private final Path file;
+    private final String runId;
+    private final String label;
+    private final String target;
+
+    private FileChannel channel;
+
+    public ResultsStore(Path file, String runId, String label, String target) throws IOException {
+        this.file = file;
+        this.runId = runId;
+        this.label = label;
+        this.target = target;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        LOGGER.info("Recording results of run {} (label {}) to {}", runId, label, file);
+    }
+
+    public synchronized void append(CycleResult result, MiningStrategy strategy) throws IOException {
+        RunRecord record = RunRecord.of(runId, label, target, strategy.toString(), result);
+        channel.write(ByteBuffer.wrap(encode(record).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+            channel = null;
+        }
+    }
+
+    public static List<RunRecord> load(Path file) throws IOException {
+        List<RunRecord> records = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return records;
+        }
+        int corrupted = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                RunRecord record = decode(line);
+                if (record == null) {
+                    corrupted++;
+                    continue;
+                }
+                records.add(record);
+            }
+        }
+        if (corrupted > 0) {
+            LOGGER.warn("{} corrupted or older version result records in {} were ignored", corrupted, file);
+        }
+        LOGGER.info("{} result records loaded from {}", records.size(), file);
+        return records;
+    }
+
+    static String encode(RunRecord record) {
+        StringBuilder phases = new StringBuilder();
+        record.getPhaseMicros().forEach((phase, micros) ->
+                phases.append(phases.length() == 0 ? "" : ",").append(phase.getKey()).append('=').append(micros));
+        String line = VERSION + SEPARATOR + record.getRunId()
+                + SEPARATOR + clean(record.getLabel())
+                + SEPARATOR + clean(record.getTarget())
+                + SEPARATOR + clean(record.getStrategy())
+                + SEPARATOR + record.getTimestamp()
+                + SEPARATOR + record.getStartScn()
+                + SEPARATOR + record.getEndScn()
+                + SEPARATOR + record.getMinedEndScn()
+                + SEPARATOR + record.getStatus()
+                + SEPARATOR + record.getLogFiles()
+                + SEPARATOR + record.getLogFileBytes()
+                + SEPARATOR + record.getPgaBytes()
+                + SEPARATOR + record.getPgaMaxBytes()
+                + SEPARATOR + phases;
+        return line + SEPARATOR + crc(line) + '\n';
+    }
+
+    static RunRecord decode(String line) {
+        int crcIndex = line.lastIndexOf(SEPARATOR);
+        if (crcIndex < 0) {
+            return null;
+        }
+        String record = line.substring(0, crcIndex);
+        if (!line.substring(crcIndex + 1).equals(String.valueOf(crc(record)))) {
+            return null;
+        }
+        String[] fields = record.split(String.valueOf(SEPARATOR), -1);
+        if (fields.length != FIELDS || !VERSION.equals(fields[0])) {
+            return null;
+        }
+        try {
+            Map<MiningPhase, Long> phaseMicros = new EnumMap<>(MiningPhase.class);
+            if (!fields[14].isEmpty()) {
+                for (String pair : fields[14].split(",")) {
+                    int eq = pair.indexOf('=');
+                    MiningPhase phase = phase(pair.substring(0, eq));
+                    if (phase != null) {
+                        phaseMicros.put(phase, Long.parseLong(pair.substring(eq + 1)));
+                    }
+                }
+            }
+            return new RunRecord(
+                    fields[1],
+                    fields[2],
+                    fields[3],
+                    fields[4],
+                    Long.parseLong(fields[5]),
+                    Long.parseLong(fields[6]),
+                    Long.parseLong(fields[7]),
+                    Long.parseLong(fields[8]),
+                    CycleResult.Status.valueOf(fields[9]),
+                    Integer.parseInt(fields[10]),
+                    Long.parseLong(fields[11]),
+                    Long.parseLong(fields[12]),
+                    Long.parseLong(fields[13]),
+                    phaseMicros
+            );
+        } catch (IllegalArgumentException | StringIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    private static MiningPhase phase(String key) {
+        for (MiningPhase phase : MiningPhase.values()) {
+            if (phase.getKey().equals(key)) {
+                return phase;
+            }
+        }
+        return null;
+    }
+
+    private static String clean(String value) {
+        return value == null ? "" : value.replace(SEPARATOR, ' ').replace('\n', ' ');
+    }
+
+    private static long crc(String record) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(record.getBytes(StandardCharsets.UTF_8));
+        return crc32.getValue();
+    }
+}
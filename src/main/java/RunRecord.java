@@ -0,0 +1,148 @@
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 结果存储中的一条记录, 对应一个挖掘周期
+ *
+ * @author zhul
+ */
+public class RunRecord {
+
+    public static final double MB = 1024 * 1024;
+
+    private final String runId;
+    private final String label;
+    private final String target;
+    private final String strategy;
+    private final long timestamp;
+    private final long startScn;
+    private final long endScn;
+    private final long minedEndScn;
+    private final CycleResult.Status status;
+    private final int logFiles;
+    private final long logFileBytes;
+    private final long pgaBytes;
+    private final long pgaMaxBytes;
+    private final Map<MiningPhase, Long> phaseMicros;
+
+    public RunRecord(
+            String runId,
+            String label,
+            String target,
+            String strategy,
+            long timestamp,
+            long startScn,
+            long endScn,
+            long minedEndScn,
+            CycleResult.Status status,
+            int logFiles,
+            long logFileBytes,
+            long pgaBytes,
+            long pgaMaxBytes,
+            Map<MiningPhase, Long> phaseMicros
+    ) {
+        this.runId = runId;
+        this.label = label;
+        this.target = target;
+        this.strategy = strategy;
+        this.timestamp = timestamp;
+        this.startScn = startScn;
+        this.endScn = endScn;
+        this.minedEndScn = minedEndScn;
+        this.status = status;
+        this.logFiles = logFiles;
+        this.logFileBytes = logFileBytes;
+        this.pgaBytes = pgaBytes;
+        this.pgaMaxBytes = pgaMaxBytes;
+        this.phaseMicros = phaseMicros;
+    }
+
+    public static RunRecord of(String runId, String label, String target, String strategy, CycleResult result) {
+        Map<MiningPhase, Long> phaseMicros = new EnumMap<>(MiningPhase.class);
+        result.getDurations().forEach((phase, duration) -> phaseMicros.put(phase, duration.toNanos() / 1000));
+        return new RunRecord(runId, label, target, strategy, System.currentTimeMillis(),
+                result.getStartScn(), result.getEndScn(), result.getMinedEndScn(), result.getStatus(),
+                result.getLogFileCount(), result.getLogFileBytes(), result.getPgaBytes(), result.getPgaMaxBytes(), phaseMicros);
+    }
+
+    /**
+     * 可以比较的场景: 同一目标库, 同一挖掘策略下同样大小的窗口和同样数量的日志文件, 日志文件数被限制的运行不与不限制的混在一起
+     */
+    public String getScenario() {
+        return target + " " + strategy + " window=" + (endScn - startScn) + " files=" + logFiles;
+    }
+
+    public double getPhaseMillis(MiningPhase phase) {
+        return phaseMicros.getOrDefault(phase, 0L) / 1000.0;
+    }
+
+    /**
+     * 与挖掘窗口重叠的日志文件字节数除以不含数据字典构建的总耗时, 字节数未知时返回 -1
+     */
+    public double getMegabytesPerSecond() {
+        long micros = 0;
+        for (Map.Entry<MiningPhase, Long> entry : phaseMicros.entrySet()) {
+            if (entry.getKey() != MiningPhase.BUILD_DICTIONARY) {
+                micros += entry.getValue();
+            }
+        }
+        return logFileBytes < 0 || micros <= 0 ? -1 : logFileBytes / MB / (micros / 1e6);
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public String getStrategy() {
+        return strategy;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getStartScn() {
+        return startScn;
+    }
+
+    public long getEndScn() {
+        return endScn;
+    }
+
+    public long getMinedEndScn() {
+        return minedEndScn;
+    }
+
+    public CycleResult.Status getStatus() {
+        return status;
+    }
+
+    public int getLogFiles() {
+        return logFiles;
+    }
+
+    public long getLogFileBytes() {
+        return logFileBytes;
+    }
+
+    public long getPgaBytes() {
+        return pgaBytes;
+    }
+
+    public long getPgaMaxBytes() {
+        return pgaMaxBytes;
+    }
+
+    public Map<MiningPhase, Long> getPhaseMicros() {
+        return Collections.unmodifiableMap(phaseMicros);
+    }
+}
@@ -0,0 +1,146 @@
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.SqlUtils;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 轻量的 scn 范围探测, 代替关联 V$LOG, V$LOGFILE 和整个 V$ARCHIVED_LOG 的查询
+ *
+ * <p>
+ * 先查询 V$LOG (每个日志组一行), 得到每个 redo thread 在线日志的最小 SEQUENCE#, 再只在最近的归档日志中聚合:
+ * 每个 thread 往前最多 -Dlogminer.probe.archived.sequences (默认 100) 个 SEQUENCE#,
+ * 并且 FIRST_TIME 在最近 -Dlogminer.probe.archived.hours (默认 24) 小时内. 当前 scn 的查询与它们并发执行.
+ * 因此返回的最小 scn 只是这个范围内可挖掘的最小 scn, 不一定是库中最早的归档日志.
+ * <p>
+ * 在线日志中 STATUS 为 UNUSED 或 FIRST_CHANGE# 为 0 的日志组 (新加入或 CLEAR 之后尚未使用) 不参与计算.
+ * <p>
+ * 结果不缓存: scn 范围只在启动时查询一次, 守护进程计算延迟时只需要最新的当前 scn, 见 {@link #currentScn()}.
+ *
+ * @author zhul
+ */
+public class ScnProbe {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScnProbe.class);
+
+    private static final long ARCHIVED_SEQUENCES = Long.getLong("logminer.probe.archived.sequences", 100L);
+
+    private static final long ARCHIVED_HOURS = Long.getLong("logminer.probe.archived.hours", 24L);
+
+    private final MetadataQueries metadataQueries;
+
+    public ScnProbe(MetadataQueries metadataQueries) {
+        this.metadataQueries = metadataQueries;
+    }
+
+    public Result probe() throws SQLException {
+        MetadataQueries.Stage stage = metadataQueries.stage("Probe scn range");
+        CompletableFuture<Long> currentScnFuture = null;
+        CompletableFuture<Result> logsFuture = null;
+        Result logs;
+        long currentScn;
+        try {
+            currentScnFuture = stage.submit("current scn", LogMinerHelper::getCurrentScn);
+            logsFuture = stage.submit("log scn range", this::probeLogs);
+            logs = MetadataQueries.await(logsFuture);
+            currentScn = MetadataQueries.await(currentScnFuture);
+        } finally {
+            MetadataQueries.awaitQuietly(currentScnFuture);
+            MetadataQueries.awaitQuietly(logsFuture);
+            stage.finish();
+        }
+        return new Result(
+                logs.minScn,
+                logs.lastArchivedFirstScn,
+                logs.currentLogFirstScn,
+                currentScn,
+                logs.archivedLogs
+        );
+    }
+
+    /**
+     * 只查询当前 scn, 不查询日志的 scn 范围
+     */
+    public long currentScn() throws SQLException {
+        MetadataQueries.Stage stage = metadataQueries.stage("Probe current scn");
+        try {
+            return MetadataQueries.await(stage.submit("current scn", LogMinerHelper::getCurrentScn));
+        } finally {
+            stage.finish();
+        }
+    }
+
+    private Result probeLogs(OracleConnection connection) throws SQLException {
+        Map<Integer, Long> minSequences = new HashMap<>();
+        long[] online = {Long.MAX_VALUE, 0};
+        connection.query(SqlUtils.onlineLogsScnQuery(), rs -> {
+            while (rs.next()) {
+                int thread = rs.getInt(1);
+                long sequence = rs.getLong(2);
+                long firstScn = rs.getLong(3);
+                minSequences.merge(thread, sequence, Math::min);
+                online[0] = Math.min(online[0], firstScn);
+                if ("CURRENT".equals(rs.getString(4))) {
+                    online[1] = Math.max(online[1], firstScn);
+                }
+            }
+        });
+        minSequences.replaceAll((thread, sequence) -> Math.max(1, sequence - ARCHIVED_SEQUENCES));
+
+        long[] archived = {Long.MAX_VALUE, -1, 0};
+        connection.query(SqlUtils.recentArchivedLogsScnQuery(minSequences, ARCHIVED_HOURS), rs -> {
+            if (rs.next() && rs.getLong(3) > 0) {
+                archived[0] = rs.getLong(1);
+                archived[1] = rs.getLong(2);
+                archived[2] = rs.getLong(3);
+            }
+        });
+        return new Result(Math.min(online[0], archived[0]), archived[1], online[1], -1, archived[2]);
+    }
+
+    public static class Result {
+
+        private final long minScn;
+        private final long lastArchivedFirstScn;
+        private final long currentLogFirstScn;
+        private final long currentScn;
+        private final long archivedLogs;
+
+        Result(long minScn, long lastArchivedFirstScn, long currentLogFirstScn, long currentScn, long archivedLogs) {
+            this.minScn = minScn;
+            this.lastArchivedFirstScn = lastArchivedFirstScn;
+            this.currentLogFirstScn = currentLogFirstScn;
+            this.currentScn = currentScn;
+            this.archivedLogs = archivedLogs;
+        }
+
+        /**
+         * 探测范围内 (在线日志和最近的归档日志) 最小的 FIRST_CHANGE#
+         */
+        public long getMinScn() {
+            return minScn;
+        }
+
+        /**
+         * 最近一个归档日志的 FIRST_CHANGE#, 探测范围内没有归档日志时为 -1
+         */
+        public long getLastArchivedFirstScn() {
+            return lastArchivedFirstScn;
+        }
+
+        public long getCurrentLogFirstScn() {
+            return currentLogFirstScn;
+        }
+
+        public long getCurrentScn() {
+            return currentScn;
+        }
+
+        public long getArchivedLogs() {
+            return archivedLogs;
+        }
+    }
+}
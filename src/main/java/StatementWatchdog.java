@@ -0,0 +1,187 @@
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.SqlUtils;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 为挖掘阶段的语句提供时间预算
+ *
+ * <p>
+ * 语句开始执行时设置 {@link Statement#setQueryTimeout(int)}, 同时由看门狗线程在预算耗尽时调用 {@link Statement#cancel()}.
+ * START_LOGMNR 之类的 PL/SQL 调用在服务端卡住时 cancel 不一定能生效, 因此可以选择在宽限期后通过另一条连接
+ * kill 掉挖掘会话.
+ *
+ * @author zhul
+ */
+public class StatementWatchdog implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatementWatchdog.class);
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final boolean killSessionOnTimeout;
+    private final Duration killGracePeriod;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "statement-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public StatementWatchdog(String url, String user, String password, boolean killSessionOnTimeout, Duration killGracePeriod) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.killSessionOnTimeout = killSessionOnTimeout;
+        this.killGracePeriod = killGracePeriod;
+    }
+
+    /**
+     * 在阶段的时间预算内执行语句, 超时时抛出 {@link PhaseTimeoutException}
+     */
+    public void execute(OracleConnection connection, MiningPhase phase, String sql) throws SQLException {
+        execute(connection, phase, phase.getTimeout(), sql);
+    }
+
+    /**
+     * 使用指定的时间预算代替阶段的默认预算执行语句, 0 表示不限制
+     */
+    public void execute(OracleConnection connection, MiningPhase phase, Duration timeout, String sql) throws SQLException {
+        if (timeout.isZero() || timeout.isNegative()) {
+            connection.executeWithoutCommitting(sql);
+            return;
+        }
+        Connection conn = connection.connection();
+        try (Statement statement = conn.createStatement(); Guard guard = guard(conn, phase, timeout, statement)) {
+            try {
+                LOGGER.debug("executing sql: {}", sql);
+                statement.execute(sql);
+            } catch (SQLException e) {
+                throw guard.translate(e);
+            }
+        }
+    }
+
+    /**
+     * 开始监视一条语句, 调用方在语句执行结束后关闭返回的 {@link Guard}. 阶段没有时间预算时返回的 Guard 不做任何事情
+     */
+    public Guard guard(Connection connection, MiningPhase phase, Statement statement) throws SQLException {
+        return guard(connection, phase, phase.getTimeout(), statement);
+    }
+
+    /**
+     * 使用指定的时间预算代替阶段的默认预算监视语句, 0 表示不限制
+     */
+    public Guard guard(Connection connection, MiningPhase phase, Duration timeout, Statement statement) throws SQLException {
+        if (timeout.isZero() || timeout.isNegative()) {
+            return new Guard(phase, timeout, null, null);
+        }
+        statement.setQueryTimeout((int) Math.max(1, (timeout.toMillis() + 999) / 1000));
+        String session = killSessionOnTimeout ? currentSession(connection) : null;
+        Guard guard = new Guard(phase, timeout, statement, session);
+        guard.cancelTask = scheduler.schedule(guard::cancel, timeout.toMillis(), TimeUnit.MILLISECONDS);
+        if (session != null) {
+            guard.killTask = scheduler.schedule(guard::kill, timeout.plus(killGracePeriod).toMillis(), TimeUnit.MILLISECONDS);
+        }
+        return guard;
+    }
+
+    private static String currentSession(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(SqlUtils.currentSessionQuery())) {
+            if (rs.next()) {
+                return rs.getString(1) + "," + rs.getString(2) + ",@" + rs.getString(3);
+            }
+            throw new SQLException("Could not get current session");
+        }
+    }
+
+    private void killSession(String session) {
+        OracleConnection sideConnection = null;
+        try {
+            LOGGER.warn("Killing session {}", session);
+            sideConnection = new OracleConnection(url, user, password);
+            sideConnection.executeWithoutCommitting(SqlUtils.killSessionStatement(session));
+        } catch (SQLException e) {
+            LOGGER.error("Failed to kill session {}", session, e);
+        } finally {
+            if (sideConnection != null) {
+                try {
+                    sideConnection.close();
+                } catch (SQLException e) {
+                    LOGGER.debug("Failed to close side connection", e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    public class Guard implements AutoCloseable {
+
+        private final MiningPhase phase;
+        private final Duration timeout;
+        private final Statement statement;
+        private final String session;
+        private volatile boolean timedOut = false;
+        private ScheduledFuture<?> cancelTask;
+        private ScheduledFuture<?> killTask;
+
+        private Guard(MiningPhase phase, Duration timeout, Statement statement, String session) {
+            this.phase = phase;
+            this.timeout = timeout;
+            this.statement = statement;
+            this.session = session;
+        }
+
+        private void cancel() {
+            timedOut = true;
+            LOGGER.warn("Phase {} exceeded its time budget of {}, cancelling statement", phase, timeout);
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                LOGGER.error("Failed to cancel statement of phase {}", phase, e);
+            }
+        }
+
+        private void kill() {
+            killSession(session);
+        }
+
+        /**
+         * 语句因超时被取消 (看门狗或驱动的 query timeout, ORA-01013) 时转换为 {@link PhaseTimeoutException}
+         */
+        public SQLException translate(SQLException e) {
+            if (timedOut || (statement != null && e.getErrorCode() == 1013)) {
+                return new PhaseTimeoutException(phase, timeout, e);
+            }
+            return e;
+        }
+
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        @Override
+        public void close() {
+            if (cancelTask != null) {
+                cancelTask.cancel(false);
+            }
+            if (killTask != null) {
+                killTask.cancel(false);
+            }
+        }
+    }
+}
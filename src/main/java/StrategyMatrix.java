@@ -0,0 +1,232 @@
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.MiningStrategy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 策略矩阵模式: 用每一种数据字典来源和 START_LOGMNR 选项的组合挖掘同一个窗口, 输出对比表
+ *
+ * <p>
+ * 组合为 数据字典来源 x CONTINUOUS_MINE x COMMITTED_DATA_ONLY x NO_ROWID_IN_STMT, 可以通过以下参数控制:
+ * <ul>
+ *     <li>-Dlogminer.matrix.dictionaries: 参与对比的数据字典来源, 默认 online,redo,flat</li>
+ *     <li>-Dlogminer.matrix.repeat: 每个组合重复的次数, 默认 1</li>
+ *     <li>-Dlogminer.matrix.query.contents: 是否查询 V$LOGMNR_CONTENTS (COMMITTED_DATA_ONLY 和 NO_ROWID_IN_STMT
+ *     主要影响这一阶段), 默认 true</li>
+ *     <li>-Dlogminer.matrix.warmup: 正式运行之前用基础策略预热的次数, 结果不计入, 默认 1</li>
+ *     <li>-Dlogminer.matrix.seed: 每一轮打乱组合顺序的随机种子, 默认为当前时间, 会输出到日志以便复现</li>
+ * </ul>
+ * 每个组合使用新的 {@link MiningCycle}, 因此使用 redo/flat 数据字典时每个组合都会在第一次运行时重新构建字典, 构建耗时单独列出.
+ * 汇总表中分别给出 START_LOGMNR 最快, 包括字典构建的总耗时最短和不含构建的吞吐量最高的组合.
+ * 不支持的组合 (例如 19c 起的 CONTINUOUS_MINE) 记录为失败, 不影响其它组合.
+ *
+ * @author zhul
+ */
+public class StrategyMatrix {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StrategyMatrix.class);
+
+    private static final long MB = 1024 * 1024;
+
+    private final Function<MiningStrategy, MiningCycle> miningCycleFactory;
+    private final MiningStrategy baseStrategy;
+    private final long startScn;
+    private final long endScn;
+    private final long scnBatch;
+
+    private final String dictionaries = System.getProperty("logminer.matrix.dictionaries", "online,redo,flat");
+    private final int repeat = Integer.getInteger("logminer.matrix.repeat", 1);
+    private final boolean queryContents = Boolean.parseBoolean(System.getProperty("logminer.matrix.query.contents", "true"));
+    private final int warmup = Integer.getInteger("logminer.matrix.warmup", 1);
+    private final long seed = Long.getLong("logminer.matrix.seed", System.currentTimeMillis());
+
+    /**
+     * @param miningCycleFactory 为每个策略创建新的挖掘周期 (不按 redo thread 并行)
+     */
+    public StrategyMatrix(
+            Function<MiningStrategy, MiningCycle> miningCycleFactory,
+            MiningStrategy baseStrategy,
+            long startScn,
+            long endScn,
+            long scnBatch
+    ) {
+        this.miningCycleFactory = miningCycleFactory;
+        this.baseStrategy = baseStrategy;
+        this.startScn = startScn;
+        this.endScn = endScn;
+        this.scnBatch = scnBatch;
+    }
+
+    public void run() throws IOException {
+        List<MiningStrategy.DictionarySource> sources = new ArrayList<>();
+        for (String source : dictionaries.split(",")) {
+            sources.add(MiningStrategy.DictionarySource.of(source.trim()));
+        }
+        List<MiningStrategy> strategies = baseStrategy.allCombinations(sources);
+        LOGGER.info("Running window [{}, {}] with {} strategies, {} runs each, {} warm-up runs, shuffle seed {}",
+                startScn, endScn, strategies.size(), repeat, warmup, seed);
+
+        if (warmup > 0) {
+            MiningCycle warmupCycle = miningCycleFactory.apply(baseStrategy);
+            for (int i = 0; i < warmup; i++) {
+                CycleResult result = mine(warmupCycle, new AtomicLong());
+                LOGGER.info("Warm-up run {} with {} ended with {}, not counted", i + 1, baseStrategy, result.getStatus());
+            }
+        }
+
+        Map<MiningStrategy, MiningCycle> miningCycles = new LinkedHashMap<>();
+        for (MiningStrategy strategy : strategies) {
+            miningCycles.put(strategy, miningCycleFactory.apply(strategy));
+        }
+        // 每一轮按随机顺序执行所有组合, 避免固定排在前面的组合总是承担冷缓存的开销
+        Random random = new Random(seed);
+        List<MiningStrategy> order = new ArrayList<>(strategies);
+        List<Run> runs = new ArrayList<>();
+        for (int i = 0; i < repeat; i++) {
+            Collections.shuffle(order, random);
+            for (MiningStrategy strategy : order) {
+                AtomicLong rows = new AtomicLong();
+                CycleResult result = mine(miningCycles.get(strategy), rows);
+                runs.add(new Run(strategy, result, rows.get()));
+            }
+        }
+        printResults(runs);
+        printSummary(strategies, runs);
+    }
+
+    private CycleResult mine(MiningCycle miningCycle, AtomicLong rows) throws IOException {
+        return miningCycle.mine(startScn, endScn, scnBatch, 0, queryContents ? row -> rows.incrementAndGet() : null, null);
+    }
+
+    private void printResults(List<Run> runs) {
+        LOGGER.info("========== Strategy matrix (execution order) ==========");
+        LOGGER.info(String.format("%-7s %-5s %-9s %-6s %8s %10s %10s %10s %10s %10s %12s %10s %8s",
+                "dict", "cont", "committed", "norow", "status", "build(ms)", "add(ms)", "start(ms)", "query(ms)", "end(ms)",
+                "rows", "scn/s", "pga(MB)"));
+        for (Run run : runs) {
+            CycleResult result = run.result;
+            LOGGER.info(String.format("%-7s %-5s %-9s %-6s %8s %10d %10d %10d %10d %10d %12d %10.0f %8d",
+                    run.strategy.getDictionarySource().getKey(),
+                    run.strategy.isContinuousMine(),
+                    run.strategy.isCommittedDataOnly(),
+                    run.strategy.isNoRowidInStmt(),
+                    result.getStatus(),
+                    result.getDuration(MiningPhase.BUILD_DICTIONARY).toMillis(),
+                    result.getDuration(MiningPhase.SET_LOG_FILES).toMillis(),
+                    result.getDuration(MiningPhase.START_LOGMNR).toMillis(),
+                    result.getDuration(MiningPhase.QUERY_CONTENTS).toMillis(),
+                    result.getDuration(MiningPhase.END_LOGMNR).toMillis(),
+                    run.rows,
+                    result.getScnPerSecond(),
+                    result.getPgaBytes() / MB));
+        }
+    }
+
+    /**
+     * 每个组合一行: 成功运行的 START_LOGMNR 平均耗时, 一次冷启动的总耗时 (字典构建 + 不含构建的平均总耗时) 和平均 scn/s
+     */
+    private void printSummary(List<MiningStrategy> strategies, List<Run> runs) {
+        LOGGER.info("========== Strategy matrix (summary of successful runs) ==========");
+        LOGGER.info(String.format("%-7s %-5s %-9s %-6s %6s %10s %10s %16s %10s",
+                "dict", "cont", "committed", "norow", "ok", "build(ms)", "start(ms)", "total+build(ms)", "scn/s"));
+        Summary bestStart = null;
+        Summary bestTotal = null;
+        Summary bestThroughput = null;
+        for (MiningStrategy strategy : strategies) {
+            Summary summary = new Summary(strategy);
+            for (Run run : runs) {
+                if (run.strategy.equals(strategy)) {
+                    summary.add(run.result);
+                }
+            }
+            if (summary.ok == 0) {
+                LOGGER.info(String.format("%-7s %-5s %-9s %-6s %6d %10s %10s %16s %10s",
+                        strategy.getDictionarySource().getKey(), strategy.isContinuousMine(),
+                        strategy.isCommittedDataOnly(), strategy.isNoRowidInStmt(), 0, "-", "-", "-", "-"));
+                continue;
+            }
+            LOGGER.info(String.format("%-7s %-5s %-9s %-6s %6d %10d %10.0f %16.0f %10.0f",
+                    strategy.getDictionarySource().getKey(), strategy.isContinuousMine(),
+                    strategy.isCommittedDataOnly(), strategy.isNoRowidInStmt(), summary.ok,
+                    summary.buildMillis, summary.getStartMillis(), summary.getTotalWithBuildMillis(), summary.getScnPerSecond()));
+            if (bestStart == null || summary.getStartMillis() < bestStart.getStartMillis()) {
+                bestStart = summary;
+            }
+            if (bestTotal == null || summary.getTotalWithBuildMillis() < bestTotal.getTotalWithBuildMillis()) {
+                bestTotal = summary;
+            }
+            if (bestThroughput == null || summary.getScnPerSecond() > bestThroughput.getScnPerSecond()) {
+                bestThroughput = summary;
+            }
+        }
+        if (bestStart == null) {
+            LOGGER.warn("No strategy completed the window");
+            return;
+        }
+        LOGGER.info("Fastest START_LOGMNR: {}, {} ms", bestStart.strategy, String.format("%.0f", bestStart.getStartMillis()));
+        LOGGER.info("Fastest total including dictionary build: {}, {} ms",
+                bestTotal.strategy, String.format("%.0f", bestTotal.getTotalWithBuildMillis()));
+        LOGGER.info("Highest throughput excluding dictionary build: {}, {} scn/s",
+                bestThroughput.strategy, String.format("%.0f", bestThroughput.getScnPerSecond()));
+    }
+
+    private static class Summary {
+
+        private final MiningStrategy strategy;
+        private int ok = 0;
+        private long buildMillis = 0;
+        private long startMillis = 0;
+        private long totalWithoutBuildMillis = 0;
+        private double scnPerSecond = 0;
+
+        Summary(MiningStrategy strategy) {
+            this.strategy = strategy;
+        }
+
+        void add(CycleResult result) {
+            // 字典只在每个组合的第一次运行中构建
+            buildMillis = Math.max(buildMillis, result.getDuration(MiningPhase.BUILD_DICTIONARY).toMillis());
+            if (!result.isOk()) {
+                return;
+            }
+            ok++;
+            startMillis += result.getDuration(MiningPhase.START_LOGMNR).toMillis();
+            totalWithoutBuildMillis += result.getTotalDuration().minus(result.getDuration(MiningPhase.BUILD_DICTIONARY)).toMillis();
+            scnPerSecond += result.getScnPerSecond();
+        }
+
+        double getStartMillis() {
+            return (double) startMillis / ok;
+        }
+
+        double getTotalWithBuildMillis() {
+            return buildMillis + (double) totalWithoutBuildMillis / ok;
+        }
+
+        double getScnPerSecond() {
+            return scnPerSecond / ok;
+        }
+    }
+
+    private static class Run {
+
+        private final MiningStrategy strategy;
+        private final CycleResult result;
+        private final long rows;
+
+        Run(MiningStrategy strategy, CycleResult result, long rows) {
+            this.strategy = strategy;
+            this.result = result;
+            this.rows = rows;
+        }
+    }
+}
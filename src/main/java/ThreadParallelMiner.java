@@ -0,0 +1,261 @@
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.MiningStrategy;
+import util.RedoSink;
+import util.SqlUtils;
+import util.TaskExecutors;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * RAC 下按 redo thread 并行挖掘
+ *
+ * <p>
+ * 每个 thread 使用独立的连接和 LogMiner 会话, 只添加该 thread 的日志文件. 由于数据字典不一定在这些日志中,
+ * 会话使用在线数据字典启动. 各会话的结果通过有界队列流式返回, 再按 scn 做多路归并, 内存占用与结果集大小无关.
+ * <p>
+ * 各会话的 start, query, end 语句受对应阶段的时间预算约束, 整个并行挖掘受 {@link MiningPhase#MINE_THREADS_IN_PARALLEL}
+ * 的预算约束, 每条语句的预算不超过整体预算的剩余部分.
+ * <p>
+ * 设置了 {@link RedoSink} 时, 各会话的 SQL_REDO 流式写入同一个 sink, 每条语句写入期间持有 sink 的锁,
+ * 语句之间按到达顺序而不是 scn 顺序排列.
+ * <p>
+ * 归并失败 (例如 consumer 抛出异常) 后不再有人读取队列, 各会话入队时带超时并检查取消标记, 放弃剩余的行并结束会话,
+ * 不会阻塞在已满的队列上. 会话使用守护线程执行.
+ *
+ * @author zhul
+ */
+public class ThreadParallelMiner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThreadParallelMiner.class);
+
+    private static final LogMinerRow END_OF_THREAD = new LogMinerRow(Long.MAX_VALUE, -1, null, null, null, null, -1);
+
+    private static final int QUEUE_CAPACITY = 8192;
+
+    private static final long OFFER_MILLIS = 100;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final MiningStrategy strategy;
+    private final StatementWatchdog statementWatchdog;
+    private RedoSink redoSink;
+
+    /**
+     * @param strategy 数据字典来源固定为在线数据字典, 其它选项沿用 strategy
+     */
+    public ThreadParallelMiner(String url, String user, String password, MiningStrategy strategy,
+                               StatementWatchdog statementWatchdog) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.statementWatchdog = statementWatchdog;
+        this.strategy = strategy.withDictionarySource(MiningStrategy.DictionarySource.ONLINE_CATALOG);
+    }
+
+    /**
+     * 设置后, SQL_REDO 流式写入 sink, 交给 consumer 的行中不再包含 SQL_REDO
+     */
+    public void setRedoSink(RedoSink redoSink) {
+        this.redoSink = redoSink;
+    }
+
+    /**
+     * 并行挖掘各 thread 的日志, 按 scn 顺序把结果交给 consumer
+     *
+     * @return 挖掘出的总行数
+     */
+    public long mine(Map<Integer, List<LogFile>> logFilesByThread, long startScn, long endScn, RowConsumer consumer) throws SQLException {
+        LOGGER.info("Mining threads {} in parallel, startScn={}, endScn={}", logFilesByThread.keySet(), startScn, endScn);
+        Instant start = Instant.now();
+        Duration budget = MiningPhase.MINE_THREADS_IN_PARALLEL.getTimeout();
+        Instant deadline = budget.isZero() || budget.isNegative() ? null : start.plus(budget);
+        ExecutorService executor = TaskExecutors.newBlockingTaskExecutor("parallel-miner", logFilesByThread.size());
+        AtomicBoolean cancelled = new AtomicBoolean();
+        List<Future<Void>> futures = new ArrayList<>();
+        List<Source> pending = new ArrayList<>();
+        PriorityQueue<Source> sources = new PriorityQueue<>(Comparator.comparingLong(s -> s.head.getScn()));
+        long count = 0;
+        try {
+            // 先提交所有 thread 的会话, 各会话的连接, ADD_LOGFILE 和 START_LOGMNR 并行执行, 再等待各自的第一行
+            for (Map.Entry<Integer, List<LogFile>> entry : logFilesByThread.entrySet()) {
+                BlockingQueue<LogMinerRow> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+                futures.add(executor.submit(() -> mineThread(entry.getKey(), entry.getValue(), startScn, endScn, deadline, queue, cancelled)));
+                pending.add(new Source(queue));
+            }
+            for (Source source : pending) {
+                if (source.advance()) {
+                    sources.add(source);
+                }
+            }
+            while (!sources.isEmpty()) {
+                Source source = sources.poll();
+                consumer.accept(source.head);
+                count++;
+                if (source.advance()) {
+                    sources.add(source);
+                }
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while mining threads in parallel", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Failed to mine threads in parallel", e.getCause());
+        } finally {
+            // 先设置取消标记, 各会话不再向没有人读取的队列中放入数据
+            cancelled.set(true);
+            executor.shutdownNow();
+        }
+        LOGGER.info("Mining {} threads in parallel cost {}, {} rows merged by scn",
+                logFilesByThread.size(), Duration.between(start, Instant.now()), count);
+        return count;
+    }
+
+    private Void mineThread(int thread, List<LogFile> logFiles, long startScn, long endScn, Instant deadline,
+                            BlockingQueue<LogMinerRow> queue, AtomicBoolean cancelled) throws Exception {
+        OracleConnection connection = null;
+        try {
+            Instant start = Instant.now();
+            connection = new OracleConnection(url, user, password);
+            LogMinerHelper.addLogFilesForMining(connection, logFiles, startScn);
+            // offset scn 之后才启用的 thread, 会话从它的第一个日志文件开始
+            long sessionStartScn = Math.max(startScn, logFiles.get(0).getFirstScn());
+            execute(connection, MiningPhase.START_LOGMNR, deadline, strategy.startLogMinerStatement(sessionStartScn, endScn));
+            LOGGER.info("Start mining session of thread {} cost {}", thread, Duration.between(start, Instant.now()));
+            try {
+                long count = 0;
+                MiningPhase phase = budgetPhase(MiningPhase.QUERY_CONTENTS, deadline);
+                try (PreparedStatement statement = connection.connection().prepareStatement(
+                        SqlUtils.queryLogMinerContents(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                     StatementWatchdog.Guard guard = statementWatchdog.guard(connection.connection(), phase,
+                             budget(MiningPhase.QUERY_CONTENTS, deadline), statement)) {
+                    statement.setFetchSize(8192);
+                    statement.setString(1, String.valueOf(startScn));
+                    statement.setString(2, String.valueOf(endScn));
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            if (!offer(queue, readRow(rs, thread), cancelled)) {
+                                LOGGER.warn("Merge was cancelled, thread {} stops after {} rows", thread, count);
+                                break;
+                            }
+                            count++;
+                        }
+                    } catch (SQLException e) {
+                        throw guard.translate(e);
+                    }
+                }
+                LOGGER.info("Thread {} mined {} rows, cost {}", thread, count, Duration.between(start, Instant.now()));
+            } finally {
+                statementWatchdog.execute(connection, MiningPhase.END_LOGMNR, "BEGIN SYS.DBMS_LOGMNR.END_LOGMNR(); END;");
+            }
+            return null;
+        } finally {
+            if (connection != null) {
+                connection.close();
+            }
+            offer(queue, END_OF_THREAD, cancelled);
+        }
+    }
+
+    /**
+     * 放入队列, 队列满时等待, 直到归并被取消
+     *
+     * @return 归并被取消时返回 false
+     */
+    private static boolean offer(BlockingQueue<LogMinerRow> queue, LogMinerRow row, AtomicBoolean cancelled)
+            throws InterruptedException {
+        while (!cancelled.get()) {
+            if (queue.offer(row, OFFER_MILLIS, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private LogMinerRow readRow(ResultSet rs, int thread) throws SQLException {
+        RedoSink sink = redoSink;
+        if (sink == null) {
+            return LogMinerRow.from(rs, thread);
+        }
+        synchronized (sink) {
+            return LogMinerRow.from(rs, thread, sink);
+        }
+    }
+
+    private void execute(OracleConnection connection, MiningPhase phase, Instant deadline, String sql) throws SQLException {
+        statementWatchdog.execute(connection, budgetPhase(phase, deadline), budget(phase, deadline), sql);
+    }
+
+    /**
+     * 阶段预算与整体预算剩余部分中较小的一个, 0 表示不限制
+     */
+    private static Duration budget(MiningPhase phase, Instant deadline) throws PhaseTimeoutException {
+        Duration timeout = phase.getTimeout();
+        if (deadline == null) {
+            return timeout;
+        }
+        Duration remaining = Duration.between(Instant.now(), deadline);
+        if (remaining.isZero() || remaining.isNegative()) {
+            throw new PhaseTimeoutException(MiningPhase.MINE_THREADS_IN_PARALLEL,
+                    MiningPhase.MINE_THREADS_IN_PARALLEL.getTimeout(), null);
+        }
+        return timeout.isZero() || timeout.isNegative() || remaining.compareTo(timeout) < 0 ? remaining : timeout;
+    }
+
+    /**
+     * 整体预算的剩余部分更紧时, 超时归到 {@link MiningPhase#MINE_THREADS_IN_PARALLEL}
+     */
+    private static MiningPhase budgetPhase(MiningPhase phase, Instant deadline) {
+        if (deadline == null) {
+            return phase;
+        }
+        Duration timeout = phase.getTimeout();
+        Duration remaining = Duration.between(Instant.now(), deadline);
+        return timeout.isZero() || timeout.isNegative() || remaining.compareTo(timeout) < 0
+                ? MiningPhase.MINE_THREADS_IN_PARALLEL
+                : phase;
+    }
+
+    private static class Source {
+
+        private final BlockingQueue<LogMinerRow> queue;
+        private LogMinerRow head;
+
+        Source(BlockingQueue<LogMinerRow> queue) {
+            this.queue = queue;
+        }
+
+        boolean advance() throws InterruptedException {
+            head = queue.take();
+            return head != END_OF_THREAD;
+        }
+    }
+
+    @FunctionalInterface
+    public interface RowConsumer {
+        void accept(LogMinerRow row) throws SQLException;
+    }
+}
@@ -0,0 +1,49 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 跟踪挖掘过程中尚未提交的事务, 用来计算事务安全的重启点
+ *
+ * @author zhul
+ */
+public class TransactionTracker {
+
+    private static final int START = 6;
+    private static final int COMMIT = 7;
+    private static final int ROLLBACK = 36;
+
+    private final Map<String, Long> openTransactions = new HashMap<>();
+
+    public void accept(LogMinerRow row) {
+        if (row.getXid() == null) {
+            return;
+        }
+        switch (row.getOperationCode()) {
+            case COMMIT:
+            case ROLLBACK:
+                openTransactions.remove(row.getXid());
+                break;
+            case START:
+            default:
+                // 在窗口之前开始的事务没有 START 记录, 以看到的第一条记录的 scn 近似作为起始 scn
+                openTransactions.putIfAbsent(row.getXid(), row.getScn());
+                break;
+        }
+    }
+
+    /**
+     * 返回最早的未提交事务的起始 scn, 没有未提交事务时返回 defaultScn
+     */
+    public long getRestartScn(long defaultScn) {
+        long restartScn = defaultScn;
+        for (long scn : openTransactions.values()) {
+            // 重启时查询条件为 SCN > startScn, 因此需要减一
+            restartScn = Math.min(restartScn, scn - 1);
+        }
+        return restartScn;
+    }
+
+    public int getOpenTransactionCount() {
+        return openTransactions.size();
+    }
+}
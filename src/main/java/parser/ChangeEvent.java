@@ -0,0 +1,77 @@
+package parser;
+
+import java.util.Map;
+
+/**
+ * 从 SQL_REDO 解析出来的列级变更事件
+ *
+ * <p>
+ * 列值保留 SQL_REDO 中的文本形式: 字符串常量去掉引号并还原转义, NULL 为 null,
+ * 函数调用 (如 TO_DATE(...), HEXTORAW(...), EMPTY_CLOB()) 和数字保持原样.
+ *
+ * @author zhul
+ */
+public class ChangeEvent {
+
+    public enum Operation {
+        INSERT,
+        UPDATE,
+        DELETE
+    }
+
+    private final Operation operation;
+    private final long scn;
+    private final String xid;
+    private final String schema;
+    private final String table;
+    private final Map<String, String> before;
+    private final Map<String, String> after;
+
+    /**
+     * @param before 更新/删除前的列值 (来自 where 子句), 插入时为空
+     * @param after  插入/更新后的列值, 删除时为空. 更新时只包含 set 子句中的列
+     */
+    public ChangeEvent(Operation operation, long scn, String xid, String schema, String table,
+                       Map<String, String> before, Map<String, String> after) {
+        this.operation = operation;
+        this.scn = scn;
+        this.xid = xid;
+        this.schema = schema;
+        this.table = table;
+        this.before = before;
+        this.after = after;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public long getScn() {
+        return scn;
+    }
+
+    public String getXid() {
+        return xid;
+    }
+
+    public String getSchema() {
+        return schema;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public Map<String, String> getBefore() {
+        return before;
+    }
+
+    public Map<String, String> getAfter() {
+        return after;
+    }
+
+    @Override
+    public String toString() {
+        return operation + " " + schema + "." + table + " scn=" + scn + " xid=" + xid + " before=" + before + " after=" + after;
+    }
+}
@@ -0,0 +1,437 @@
+package parser;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 手写的 SQL_REDO 解析器, 把 LogMiner 生成的 insert/update/delete 语句解析为 {@link ChangeEvent}
+ *
+ * <p>
+ * 支持的语句形式 (LogMiner 生成的语句格式固定, 因此不需要通用的 SQL 解析器):
+ * <pre>
+ * insert into "S"."T"("C1","C2") values ('a',NULL);
+ * update "S"."T" set "C1" = 'b' where "C1" = 'a' and "C2" IS NULL;
+ * delete from "S"."T" where "C1" = 'b' and "C2" IS NULL;
+ * </pre>
+ * 解析是单遍扫描, 没有正则和回溯. 每张表的列名和 insert 列清单缓存在 {@link TableLayout} 中 (LRU, 最多 maxCachedTables 张表),
+ * 相同结构的语句不再重复解析列名.
+ * <p>
+ * 非线程安全, 每个挖掘会话使用一个实例.
+ *
+ * @author zhul
+ */
+public class RedoSqlParser {
+
+    private static final String ROWID = "ROWID";
+
+    private final int maxCachedTables;
+    private final Map<String, TableLayout> layouts;
+
+    private String lastTableKey;
+    private TableLayout lastLayout;
+    private String lastSchema;
+    private String lastTable;
+
+    private String sql;
+    private int pos;
+    private int length;
+
+    private long parsed = 0;
+    private long failed = 0;
+    private long layoutHits = 0;
+    private long layoutMisses = 0;
+
+    /**
+     * @param maxCachedTables 缓存表结构的最大表数, 0 表示不缓存
+     */
+    public RedoSqlParser(int maxCachedTables) {
+        this.maxCachedTables = maxCachedTables;
+        this.layouts = new LinkedHashMap<String, TableLayout>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TableLayout> eldest) {
+                return size() > RedoSqlParser.this.maxCachedTables;
+            }
+        };
+    }
+
+    /**
+     * 解析一条 SQL_REDO, 不是 insert/update/delete 或无法解析时返回 null
+     */
+    public ChangeEvent parse(String sql, long scn, String xid) {
+        if (sql == null) {
+            return null;
+        }
+        this.sql = sql;
+        this.pos = 0;
+        this.length = sql.length();
+        try {
+            ChangeEvent event;
+            if (matchKeyword("insert")) {
+                expectKeyword("into");
+                event = parseInsert(scn, xid);
+            } else if (matchKeyword("update")) {
+                event = parseUpdate(scn, xid);
+            } else if (matchKeyword("delete")) {
+                expectKeyword("from");
+                event = parseDelete(scn, xid);
+            } else {
+                return null;
+            }
+            parsed++;
+            return event;
+        } catch (ParseException e) {
+            failed++;
+            return null;
+        } finally {
+            this.sql = null;
+        }
+    }
+
+    private ChangeEvent parseInsert(long scn, String xid) throws ParseException {
+        TableLayout layout = table();
+        String schema = lastSchema;
+        String table = lastTable;
+        expect('(');
+        int listStart = pos;
+        String[] columns = layout.matchColumnList(sql, listStart);
+        if (columns != null) {
+            int listEnd = listStart + layout.getRawColumnListLength();
+            if (listEnd < length && sql.charAt(listEnd) == ')') {
+                pos = listEnd;
+                layoutHits++;
+            } else {
+                columns = null;
+            }
+        }
+        if (columns == null) {
+            layoutMisses++;
+            columns = parseColumnList(layout, listStart);
+        }
+        expect(')');
+        expectKeyword("values");
+        expect('(');
+        Map<String, String> after = new LinkedHashMap<>(columns.length * 2);
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                expect(',');
+            }
+            after.put(columns[i], value());
+        }
+        expect(')');
+        return new ChangeEvent(ChangeEvent.Operation.INSERT, scn, xid, schema, table, new LinkedHashMap<>(0), after);
+    }
+
+    private String[] parseColumnList(TableLayout layout, int listStart) throws ParseException {
+        int count = 1;
+        for (int i = listStart, depth = 0; i < length; i++) {
+            char c = sql.charAt(i);
+            if (c == '"') {
+                depth ^= 1;
+            } else if (depth == 0 && c == ',') {
+                count++;
+            } else if (depth == 0 && c == ')') {
+                break;
+            }
+        }
+        String[] columns = new String[count];
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                expect(',');
+            }
+            columns[i] = columnName(layout);
+        }
+        skipWhitespace();
+        layout.updateColumnList(sql.substring(listStart, pos), columns);
+        return columns;
+    }
+
+    private ChangeEvent parseUpdate(long scn, String xid) throws ParseException {
+        TableLayout layout = table();
+        String schema = lastSchema;
+        String table = lastTable;
+        expectKeyword("set");
+        Map<String, String> after = new LinkedHashMap<>();
+        do {
+            String column = columnName(layout);
+            expect('=');
+            after.put(column, value());
+        } while (match(','));
+        Map<String, String> before = new LinkedHashMap<>();
+        if (matchKeyword("where")) {
+            conditions(layout, before);
+        }
+        return new ChangeEvent(ChangeEvent.Operation.UPDATE, scn, xid, schema, table, before, after);
+    }
+
+    private ChangeEvent parseDelete(long scn, String xid) throws ParseException {
+        TableLayout layout = table();
+        String schema = lastSchema;
+        String table = lastTable;
+        Map<String, String> before = new LinkedHashMap<>();
+        if (matchKeyword("where")) {
+            conditions(layout, before);
+        }
+        return new ChangeEvent(ChangeEvent.Operation.DELETE, scn, xid, schema, table, before, new LinkedHashMap<>(0));
+    }
+
+    private void conditions(TableLayout layout, Map<String, String> before) throws ParseException {
+        do {
+            skipWhitespace();
+            boolean quoted = pos < length && sql.charAt(pos) == '"';
+            String column = columnName(layout);
+            String value;
+            if (matchKeyword("is")) {
+                expectKeyword("null");
+                value = null;
+            } else {
+                expect('=');
+                value = value();
+            }
+            if (quoted || !ROWID.equalsIgnoreCase(column)) {
+                before.put(column, value);
+            }
+        } while (matchKeyword("and"));
+    }
+
+    /**
+     * 解析 "SCHEMA"."TABLE", 返回对应的表结构, schema 和表名保存在 lastSchema/lastTable 中
+     */
+    private TableLayout table() throws ParseException {
+        skipWhitespace();
+        int start = pos;
+        if (lastTableKey != null && sql.regionMatches(start, lastTableKey, 0, lastTableKey.length())) {
+            int end = start + lastTableKey.length();
+            if (end < length && !isIdentifierPart(sql.charAt(end)) && sql.charAt(end) != '.') {
+                pos = end;
+                return lastLayout;
+            }
+        }
+        int schemaStart = pos;
+        int schemaEnd = skipIdentifier();
+        String schema = null;
+        int tableStart = schemaStart;
+        int tableEnd = schemaEnd;
+        if (pos < length && sql.charAt(pos) == '.') {
+            pos++;
+            schema = unquote(schemaStart, schemaEnd);
+            tableStart = pos;
+            tableEnd = skipIdentifier();
+        }
+        String table = unquote(tableStart, tableEnd);
+        String key = sql.substring(start, pos);
+
+        TableLayout layout = maxCachedTables > 0 ? layouts.get(key) : null;
+        if (layout == null) {
+            layout = new TableLayout();
+            if (maxCachedTables > 0) {
+                layouts.put(key, layout);
+            }
+        }
+        lastTableKey = maxCachedTables > 0 ? key : null;
+        lastLayout = layout;
+        lastSchema = schema;
+        lastTable = table;
+        return layout;
+    }
+
+    private String columnName(TableLayout layout) throws ParseException {
+        skipWhitespace();
+        int start = pos;
+        int end = skipIdentifier();
+        if (sql.charAt(start) == '"') {
+            start++;
+            end--;
+        }
+        return layout.column(sql, start, end);
+    }
+
+    /**
+     * 跳过一个标识符 (带引号或不带引号), 返回其结束位置
+     */
+    private int skipIdentifier() throws ParseException {
+        if (pos >= length) {
+            throw new ParseException();
+        }
+        if (sql.charAt(pos) == '"') {
+            int close = sql.indexOf('"', pos + 1);
+            if (close < 0) {
+                throw new ParseException();
+            }
+            pos = close + 1;
+            return pos;
+        }
+        int start = pos;
+        while (pos < length && isIdentifierPart(sql.charAt(pos))) {
+            pos++;
+        }
+        if (pos == start) {
+            throw new ParseException();
+        }
+        return pos;
+    }
+
+    private String unquote(int start, int end) {
+        if (end - start >= 2 && sql.charAt(start) == '"') {
+            return sql.substring(start + 1, end - 1);
+        }
+        return sql.substring(start, end);
+    }
+
+    /**
+     * 解析一个值: 字符串常量, NULL, 函数调用 (保持原样) 或其它常量 (数字等, 保持原样)
+     */
+    private String value() throws ParseException {
+        skipWhitespace();
+        if (pos >= length) {
+            throw new ParseException();
+        }
+        char c = sql.charAt(pos);
+        if (c == '\'') {
+            return string();
+        }
+        int start = pos;
+        if (isIdentifierStart(c)) {
+            while (pos < length && isIdentifierPart(sql.charAt(pos))) {
+                pos++;
+            }
+            if (pos - start == 4 && sql.regionMatches(true, start, "NULL", 0, 4)) {
+                return null;
+            }
+            skipWhitespace();
+            if (pos < length && sql.charAt(pos) == '(') {
+                skipParentheses();
+                return sql.substring(start, pos);
+            }
+            return sql.substring(start, pos).trim();
+        }
+        while (pos < length) {
+            c = sql.charAt(pos);
+            if (c == ',' || c == ')' || c == ';' || c <= ' ') {
+                break;
+            }
+            pos++;
+        }
+        if (pos == start) {
+            throw new ParseException();
+        }
+        return sql.substring(start, pos);
+    }
+
+    private String string() throws ParseException {
+        int start = ++pos;
+        StringBuilder builder = null;
+        while (true) {
+            int quote = sql.indexOf('\'', pos);
+            if (quote < 0) {
+                throw new ParseException();
+            }
+            if (quote + 1 < length && sql.charAt(quote + 1) == '\'') {
+                if (builder == null) {
+                    builder = new StringBuilder(quote - start + 16);
+                }
+                builder.append(sql, pos, quote + 1);
+                pos = quote + 2;
+                continue;
+            }
+            if (builder == null) {
+                pos = quote + 1;
+                return sql.substring(start, quote);
+            }
+            builder.append(sql, pos, quote);
+            pos = quote + 1;
+            return builder.toString();
+        }
+    }
+
+    private void skipParentheses() throws ParseException {
+        int depth = 0;
+        while (pos < length) {
+            char c = sql.charAt(pos);
+            if (c == '\'') {
+                string();
+                continue;
+            }
+            pos++;
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return;
+            }
+        }
+        throw new ParseException();
+    }
+
+    private boolean matchKeyword(String keyword) {
+        skipWhitespace();
+        int end = pos + keyword.length();
+        if (end <= length && sql.regionMatches(true, pos, keyword, 0, keyword.length())
+                && (end == length || !isIdentifierPart(sql.charAt(end)))) {
+            pos = end;
+            return true;
+        }
+        return false;
+    }
+
+    private void expectKeyword(String keyword) throws ParseException {
+        if (!matchKeyword(keyword)) {
+            throw new ParseException();
+        }
+    }
+
+    private boolean match(char c) {
+        skipWhitespace();
+        if (pos < length && sql.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) throws ParseException {
+        if (!match(c)) {
+            throw new ParseException();
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < length && sql.charAt(pos) <= ' ') {
+            pos++;
+        }
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#';
+    }
+
+    public long getParsed() {
+        return parsed;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getLayoutHits() {
+        return layoutHits;
+    }
+
+    public long getLayoutMisses() {
+        return layoutMisses;
+    }
+
+    /**
+     * 解析失败, 不记录堆栈, 失败只计数
+     */
+    private static class ParseException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        ParseException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package parser;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * {@link RedoSqlParser} 的吞吐量基准, 不需要连接数据库
+ *
+ * <p>
+ * 生成若干张不同宽度的表的 insert/update/delete 语句, 分别在启用和禁用表结构缓存时解析, 输出每秒语句数和 MB/s.
+ * 可以通过 -Dlogminer.benchmark.statements 和 -Dlogminer.benchmark.rounds 调整语句数和轮数.
+ *
+ * @author zhul
+ */
+public class RedoSqlParserBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedoSqlParserBenchmark.class);
+
+    private static final int[] TABLE_WIDTHS = {8, 32, 96};
+
+    public static void main(String[] args) {
+        int statements = Integer.getInteger("logminer.benchmark.statements", 200_000);
+        int rounds = Integer.getInteger("logminer.benchmark.rounds", 5);
+        List<String> sqls = generate(statements, new Random(42));
+        long bytes = 0;
+        for (String sql : sqls) {
+            bytes += sql.length();
+        }
+        LOGGER.info("Generated {} statements, {} MB", sqls.size(), bytes / (1024 * 1024));
+
+        run("cached", new RedoSqlParser(1024), sqls, bytes, rounds);
+        run("uncached", new RedoSqlParser(0), sqls, bytes, rounds);
+    }
+
+    private static void run(String name, RedoSqlParser parser, List<String> sqls, long bytes, int rounds) {
+        // 预热
+        parseAll(parser, sqls);
+        long best = Long.MAX_VALUE;
+        long sink = 0;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            sink += parseAll(parser, sqls);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (parser.getFailed() > 0) {
+            throw new IllegalStateException(parser.getFailed() + " generated statements could not be parsed");
+        }
+        double seconds = best / 1e9;
+        LOGGER.info("{}: {} statements/s, {} MB/s, layout hits {}, misses {} (checksum {})",
+                name,
+                String.format("%.0f", sqls.size() / seconds),
+                String.format("%.1f", bytes / seconds / (1024 * 1024)),
+                parser.getLayoutHits(), parser.getLayoutMisses(), sink);
+    }
+
+    private static long parseAll(RedoSqlParser parser, List<String> sqls) {
+        long columns = 0;
+        for (int i = 0; i < sqls.size(); i++) {
+            ChangeEvent event = parser.parse(sqls.get(i), i, "0A001B00C3D40000");
+            if (event != null) {
+                columns += event.getBefore().size() + event.getAfter().size();
+            }
+        }
+        return columns;
+    }
+
+    private static List<String> generate(int count, Random random) {
+        List<String> sqls = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int width = TABLE_WIDTHS[random.nextInt(TABLE_WIDTHS.length)];
+            String table = "\"BENCH\".\"T_" + width + "\"";
+            int kind = random.nextInt(10);
+            StringBuilder sql = new StringBuilder(width * 32);
+            if (kind < 6) {
+                sql.append("insert into ").append(table).append("(");
+                for (int c = 0; c < width; c++) {
+                    sql.append(c == 0 ? "" : ",").append("\"COL_").append(c).append("\"");
+                }
+                sql.append(") values (");
+                for (int c = 0; c < width; c++) {
+                    sql.append(c == 0 ? "" : ",").append(value(c, random));
+                }
+                sql.append(");");
+            } else if (kind < 9) {
+                sql.append("update ").append(table).append(" set ");
+                sql.append("\"COL_1\" = ").append(value(1, random)).append(", \"COL_2\" = ").append(value(2, random));
+                where(sql, width, random);
+            } else {
+                sql.append("delete from ").append(table);
+                where(sql, width, random);
+            }
+            sqls.add(sql.toString());
+        }
+        return sqls;
+    }
+
+    private static void where(StringBuilder sql, int width, Random random) {
+        sql.append(" where ");
+        for (int c = 0; c < width; c++) {
+            sql.append(c == 0 ? "" : " and ").append("\"COL_").append(c).append("\"");
+            String value = value(c, random);
+            sql.append("NULL".equals(value) ? " IS NULL" : " = " + value);
+        }
+        sql.append(";");
+    }
+
+    private static String value(int column, Random random) {
+        switch (column % 5) {
+            case 0:
+                return String.valueOf(random.nextInt(1_000_000));
+            case 1:
+                return "'value " + random.nextInt(1000) + "'";
+            case 2:
+                return "TO_DATE('2021-06-" + (10 + random.nextInt(18)) + " 10:11:12', 'YYYY-MM-DD HH24:MI:SS')";
+            case 3:
+                return random.nextInt(4) == 0 ? "NULL" : "'it''s " + random.nextInt(100) + "'";
+            default:
+                return "'" + Long.toHexString(random.nextLong()) + "'";
+        }
+    }
+}
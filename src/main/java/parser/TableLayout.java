@@ -0,0 +1,73 @@
+package parser;
+
+import java.util.Arrays;
+
+/**
+ * 缓存的表结构: 已知的列名以及 insert 语句中原始的列清单文本
+ *
+ * <p>
+ * 同一张表的 insert 语句列清单几乎总是相同的, 解析时先和缓存的文本做一次 regionMatches, 相同则直接复用列名数组.
+ * update/delete 语句中的列名也从这里查找, 复用同一个 String 实例, 避免每行都分配新的列名.
+ *
+ * @author zhul
+ */
+class TableLayout {
+
+    private String rawColumnList;
+    private String[] insertColumns;
+    private String[] columns;
+    private int hint = 0;
+
+    TableLayout() {
+        this.columns = new String[0];
+    }
+
+    /**
+     * sql 中从 offset 开始的列清单是否与缓存的相同, 相同时返回缓存的列名, 否则返回 null
+     */
+    String[] matchColumnList(String sql, int offset) {
+        if (rawColumnList != null && sql.regionMatches(offset, rawColumnList, 0, rawColumnList.length())) {
+            return insertColumns;
+        }
+        return null;
+    }
+
+    int getRawColumnListLength() {
+        return rawColumnList.length();
+    }
+
+    /**
+     * 记录新的 insert 列清单, 表结构变化 (DDL) 后会出现
+     */
+    void updateColumnList(String rawColumnList, String[] insertColumns) {
+        this.rawColumnList = rawColumnList;
+        this.insertColumns = insertColumns;
+        this.columns = insertColumns.clone();
+        this.hint = 0;
+    }
+
+    /**
+     * 查找 sql[start, end) 对应的列名. update/delete 中列的顺序通常与表定义一致, 因此从上一次命中的下一个位置开始找.
+     * 未找到时记录为新的列.
+     */
+    String column(String sql, int start, int end) {
+        int length = end - start;
+        int n = columns.length;
+        for (int i = 0; i < n; i++) {
+            int index = hint + i;
+            if (index >= n) {
+                index -= n;
+            }
+            String column = columns[index];
+            if (column.length() == length && sql.regionMatches(start, column, 0, length)) {
+                hint = index + 1 == n ? 0 : index + 1;
+                return column;
+            }
+        }
+        String column = sql.substring(start, end);
+        columns = Arrays.copyOf(columns, n + 1);
+        columns[n] = column;
+        hint = 0;
+        return column;
+    }
+}
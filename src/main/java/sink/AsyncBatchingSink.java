@@ -0,0 +1,241 @@
+package sink;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import parser.ChangeEvent;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步批量投递: 事件先在调用线程中攒批, 整批放入有界队列, 由后台线程交给被包装的 sink
+ *
+ * <p>
+ * 一批事件在达到 batchSize, 或者 {@link #flush} 时由调用线程入队. 事件流停顿时, 后台线程在空闲时检查未满的批次,
+ * 第一个事件之后等待超过 linger 就把它入队, 因此即使没有下一个事件或 flush, 投递延迟也不会超过 linger 太多
+ * (另加最多 min(linger, 100ms) 的轮询间隔, 以及队列中已有批次的投递时间).
+ * 未满的批次和入队操作由同一把锁保护, 入队使用不阻塞的 offer, 批次之间的顺序不变.
+ * 队列满时 (最多 queueCapacity 个事件) 入队等待, 对挖掘形成反压.
+ * {@link #flush} 等待之前接收的事件全部投递后再 flush 被包装的 sink, 在记录检查点之前调用即可保证检查点之前的事件都已落地.
+ * <p>
+ * accept, skip 和 flush 只能由同一个线程调用. 被包装的 sink 投递失败后, 后续的 accept/flush 会抛出该异常.
+ *
+ * @author zhul
+ */
+public class AsyncBatchingSink implements EventSink {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncBatchingSink.class);
+
+    private static final long POLL_MILLIS = 100;
+
+    private final EventSink delegate;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final long pollMillis;
+    private final BlockingQueue<List<ChangeEvent>> queue;
+    private final Thread worker;
+
+    /**
+     * 保护 pending, pendingSinceNanos, accepted 和 delivered, 也用来等待队列空间和投递进度
+     */
+    private final Object lock = new Object();
+    private List<ChangeEvent> pending;
+    private long pendingSinceNanos;
+    private long accepted = 0;
+    private long delivered = 0;
+    private long skipped = 0;
+    private volatile IOException failure;
+    private volatile boolean running = true;
+
+    private long batches = 0;
+    private long lingerBatches = 0;
+    private long deliveryNanos = 0;
+    private final long createdNanos = System.nanoTime();
+
+    public AsyncBatchingSink(EventSink delegate, int batchSize, long lingerMillis, int queueCapacity) {
+        this.delegate = delegate;
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.pollMillis = Math.max(1, Math.min(POLL_MILLIS, lingerMillis));
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity / this.batchSize));
+        this.pending = new ArrayList<>(this.batchSize);
+        this.worker = new Thread(this::deliverLoop, "event-sink");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * 接收一个事件, 与 {@link #accept(List)} 相比不需要为每个事件包装一个列表
+     */
+    public void accept(ChangeEvent event) throws IOException {
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                pendingSinceNanos = System.nanoTime();
+            }
+            pending.add(event);
+            if (pending.size() < batchSize && System.nanoTime() - pendingSinceNanos < lingerNanos) {
+                return;
+            }
+        }
+        enqueuePending();
+    }
+
+    @Override
+    public void accept(List<ChangeEvent> events) throws IOException {
+        for (int i = 0, n = events.size(); i < n; i++) {
+            accept(events.get(i));
+        }
+    }
+
+    /**
+     * 记录一行没有产生事件的数据 (DDL, commit 等无法解析为变更事件的 SQL_REDO), 只计数
+     */
+    public void skip() {
+        skipped++;
+    }
+
+    private void enqueuePending() throws IOException {
+        synchronized (lock) {
+            while (!offerPending()) {
+                checkFailure();
+                try {
+                    // wait 释放锁, 后台线程可以继续投递
+                    lock.wait(POLL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while queueing change events");
+                }
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * 把未满的批次放入队列, 调用方必须持有 lock
+     *
+     * @return 没有未满的批次或已入队时返回 true, 队列已满时返回 false
+     */
+    private boolean offerPending() {
+        if (pending.isEmpty()) {
+            return true;
+        }
+        if (!queue.offer(pending)) {
+            return false;
+        }
+        accepted += pending.size();
+        pending = new ArrayList<>(batchSize);
+        return true;
+    }
+
+    private void deliverLoop() {
+        try {
+            while (running || !queue.isEmpty()) {
+                List<ChangeEvent> batch = queue.poll(pollMillis, TimeUnit.MILLISECONDS);
+                if (batch != null) {
+                    deliver(batch);
+                } else {
+                    enqueueLingering();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Failed to deliver change events", e);
+            failure = e instanceof IOException ? (IOException) e : new IOException(e);
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 后台线程空闲时, 把等待超过 linger 的未满批次放入队列
+     */
+    private void enqueueLingering() {
+        synchronized (lock) {
+            if (!pending.isEmpty() && System.nanoTime() - pendingSinceNanos >= lingerNanos && offerPending()) {
+                lingerBatches++;
+            }
+        }
+    }
+
+    private void deliver(List<ChangeEvent> batch) throws IOException {
+        long start = System.nanoTime();
+        synchronized (delegate) {
+            delegate.accept(batch);
+        }
+        deliveryNanos += System.nanoTime() - start;
+        batches++;
+        synchronized (lock) {
+            delivered += batch.size();
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        enqueuePending();
+        synchronized (lock) {
+            while (delivered < accepted && failure == null) {
+                try {
+                    lock.wait(POLL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while flushing change events");
+                }
+            }
+        }
+        checkFailure();
+        synchronized (delegate) {
+            delegate.flush();
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        IOException e = failure;
+        if (e != null) {
+            throw new IOException("Change event delivery failed", e);
+        }
+    }
+
+    public long getDelivered() {
+        synchronized (lock) {
+            return delivered;
+        }
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            running = false;
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            delegate.close();
+            logMetrics();
+        }
+    }
+
+    public void logMetrics() {
+        long delivered = getDelivered();
+        double seconds = (System.nanoTime() - createdNanos) / 1e9;
+        LOGGER.info("Change events delivered: {}, rows without event: {}, batches: {} ({} after linger), avg batch: {}, delivery cost: {} ms, {} events/s",
+                delivered, skipped, batches, lingerBatches,
+                batches == 0 ? 0 : delivered / batches,
+                TimeUnit.NANOSECONDS.toMillis(deliveryNanos),
+                String.format("%.0f", seconds <= 0 ? 0 : delivered / seconds));
+    }
+}
@@ -0,0 +1,47 @@
+package sink;
+
+import parser.ChangeEvent;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 把事件以 {@link ChangeEventCodec} 格式追加到一个文件
+ *
+ * @author zhul
+ */
+public class BinaryFileEventSink implements EventSink {
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final FileOutputStream file;
+    private final DataOutputStream out;
+
+    public BinaryFileEventSink(Path path) throws IOException {
+        this.file = new FileOutputStream(path.toFile(), true);
+        this.out = new DataOutputStream(new BufferedOutputStream(file, BUFFER_SIZE));
+    }
+
+    @Override
+    public void accept(List<ChangeEvent> events) throws IOException {
+        for (int i = 0, n = events.size(); i < n; i++) {
+            ChangeEventCodec.write(out, events.get(i));
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+        file.getFD().sync();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        out.close();
+    }
+}
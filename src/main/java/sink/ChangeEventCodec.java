@@ -0,0 +1,81 @@
+package sink;
+
+import parser.ChangeEvent;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link ChangeEvent} 的二进制编码
+ *
+ * <p>
+ * 格式: 操作类型 (1 字节), scn (8 字节), xid, schema, table, before, after.
+ * 字符串编码为 int 长度 + UTF-8 字节, null 的长度为 -1 (LOB 值可能超过 {@link DataOutput#writeUTF} 的 64 KB 上限);
+ * map 编码为 int 条目数 + 依次的 key/value.
+ *
+ * @author zhul
+ */
+public class ChangeEventCodec {
+
+    public static void write(DataOutput out, ChangeEvent event) throws IOException {
+        out.writeByte(event.getOperation().ordinal());
+        out.writeLong(event.getScn());
+        writeString(out, event.getXid());
+        writeString(out, event.getSchema());
+        writeString(out, event.getTable());
+        writeMap(out, event.getBefore());
+        writeMap(out, event.getAfter());
+    }
+
+    public static ChangeEvent read(DataInput in) throws IOException {
+        ChangeEvent.Operation operation = ChangeEvent.Operation.values()[in.readByte()];
+        long scn = in.readLong();
+        String xid = readString(in);
+        String schema = readString(in);
+        String table = readString(in);
+        Map<String, String> before = readMap(in);
+        Map<String, String> after = readMap(in);
+        return new ChangeEvent(operation, scn, xid, schema, table, before, after);
+    }
+
+    private static void writeMap(DataOutput out, Map<String, String> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+    }
+
+    private static Map<String, String> readMap(DataInput in) throws IOException {
+        int size = in.readInt();
+        Map<String, String> map = new LinkedHashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            map.put(readString(in), readString(in));
+        }
+        return map;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,47 @@
+package sink;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import parser.ChangeEvent;
+
+import java.util.List;
+
+/**
+ * 只按操作类型计数, 关闭时输出统计
+ *
+ * @author zhul
+ */
+public class CountingEventSink implements EventSink {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CountingEventSink.class);
+
+    private final long[] counts = new long[ChangeEvent.Operation.values().length];
+    private long batches = 0;
+
+    @Override
+    public void accept(List<ChangeEvent> events) {
+        batches++;
+        for (int i = 0, n = events.size(); i < n; i++) {
+            counts[events.get(i).getOperation().ordinal()]++;
+        }
+    }
+
+    public long getCount(ChangeEvent.Operation operation) {
+        return counts[operation.ordinal()];
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+        LOGGER.info("Events counted: insert={}, update={}, delete={}, batches={}",
+                getCount(ChangeEvent.Operation.INSERT), getCount(ChangeEvent.Operation.UPDATE),
+                getCount(ChangeEvent.Operation.DELETE), batches);
+    }
+}
@@ -0,0 +1,127 @@
+package sink;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import parser.ChangeEvent;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * 基于本地目录的队列, 用来代替 Kafka 测量投递开销
+ *
+ * <p>
+ * 事件以 {@link ChangeEventCodec} 格式写入 %020d.tmp 段文件, 段文件超过 segmentBytes 或 flush 时 fsync 后原子重命名为 .seg,
+ * 消费方只读取 .seg 文件, 按文件名顺序消费即可保证顺序. 段编号在重启后接着目录中最大的编号继续.
+ * <p>
+ * 启动时残留的 .tmp 文件是上次异常退出时未 flush 的数据, 它们在检查点之后, 会被重新挖掘, 因此直接删除 (至少一次投递).
+ *
+ * @author zhul
+ */
+public class DirectoryQueueEventSink implements EventSink {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryQueueEventSink.class);
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final Path directory;
+    private final long segmentBytes;
+
+    private long nextSegment;
+    private Path currentPath;
+    private FileOutputStream currentFile;
+    private DataOutputStream current;
+
+    private long segmentsPublished = 0;
+
+    /**
+     * @param segmentBytes 段文件的大小上限, 超过后切换到新的段文件
+     */
+    public DirectoryQueueEventSink(Path directory, long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+        this.nextSegment = recover();
+    }
+
+    private long recover() throws IOException {
+        long maxSegment = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    LOGGER.warn("Deleting unpublished segment {}", file);
+                    Files.delete(file);
+                } else if (name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        maxSegment = Math.max(maxSegment,
+                                Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                    } catch (NumberFormatException e) {
+                        LOGGER.warn("Ignoring unexpected file {} in queue directory", file);
+                    }
+                }
+            }
+        }
+        return maxSegment + 1;
+    }
+
+    @Override
+    public void accept(List<ChangeEvent> events) throws IOException {
+        if (current == null) {
+            currentPath = directory.resolve(String.format("%020d%s", nextSegment, TEMP_SUFFIX));
+            currentFile = new FileOutputStream(currentPath.toFile());
+            current = new DataOutputStream(new BufferedOutputStream(currentFile, BUFFER_SIZE));
+        }
+        for (int i = 0, n = events.size(); i < n; i++) {
+            ChangeEventCodec.write(current, events.get(i));
+        }
+        if (current.size() >= segmentBytes) {
+            publish();
+        }
+    }
+
+    /**
+     * 把当前段文件刷到磁盘并重命名为 .seg
+     */
+    private void publish() throws IOException {
+        if (current == null) {
+            return;
+        }
+        current.flush();
+        currentFile.getFD().sync();
+        current.close();
+        Files.move(currentPath, directory.resolve(String.format("%020d%s", nextSegment, SEGMENT_SUFFIX)),
+                StandardCopyOption.ATOMIC_MOVE);
+        nextSegment++;
+        segmentsPublished++;
+        current = null;
+        currentFile = null;
+        currentPath = null;
+    }
+
+    public long getSegmentsPublished() {
+        return segmentsPublished;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        publish();
+    }
+
+    @Override
+    public void close() throws IOException {
+        publish();
+        LOGGER.info("{} segments published to {}", segmentsPublished, directory);
+    }
+}
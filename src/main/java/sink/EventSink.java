@@ -0,0 +1,31 @@
+package sink;
+
+import parser.ChangeEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 挖掘结果的投递目标
+ *
+ * <p>
+ * 实现类不需要是线程安全的, 需要异步投递时由 {@link AsyncBatchingSink} 包装, 保证只有一个线程调用.
+ *
+ * @author zhul
+ */
+public interface EventSink extends Closeable {
+
+    /**
+     * 接收一批事件, 调用方在返回后可以复用 events 列表
+     */
+    void accept(List<ChangeEvent> events) throws IOException;
+
+    /**
+     * 保证之前接收的事件都已投递 (写入文件的实现需要刷到磁盘)
+     */
+    void flush() throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,38 @@
+package sink;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 按名称创建内置的 {@link EventSink}
+ *
+ * @author zhul
+ */
+public class EventSinks {
+
+    private static final long QUEUE_SEGMENT_BYTES = Long.getLong("logminer.sink.segment.bytes", 64L * 1024 * 1024);
+
+    /**
+     * @param type null / counting / file / queue
+     * @param path file 时是文件路径 (默认 log_miner_events.bin), queue 时是目录 (默认 log_miner_events), 其它类型忽略
+     */
+    public static EventSink create(String type, String path) throws IOException {
+        switch (type.toLowerCase()) {
+            case "null":
+                return new NullEventSink();
+            case "counting":
+                return new CountingEventSink();
+            case "file":
+                return new BinaryFileEventSink(resolve(path, "log_miner_events.bin"));
+            case "queue":
+                return new DirectoryQueueEventSink(resolve(path, "log_miner_events"), QUEUE_SEGMENT_BYTES);
+            default:
+                throw new IllegalArgumentException("Unknown event sink: " + type);
+        }
+    }
+
+    private static Path resolve(String path, String defaultPath) {
+        return Paths.get(path == null ? defaultPath : path);
+    }
+}
@@ -0,0 +1,25 @@
+package sink;
+
+import parser.ChangeEvent;
+
+import java.util.List;
+
+/**
+ * 丢弃所有事件. 事件在投递之前已经被解析和攒批, 因此测得的是抓取 + 解析 + 攒批的吞吐量, 即投递开销为零时的基线
+ *
+ * @author zhul
+ */
+public class NullEventSink implements EventSink {
+
+    @Override
+    public void accept(List<ChangeEvent> events) {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
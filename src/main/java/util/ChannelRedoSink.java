@@ -0,0 +1,103 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 把 SQL_REDO 以 UTF-8 编码写入一个固定大小的 {@link ByteBuffer}, 写满后刷到 channel, 每条语句一行
+ *
+ * <p>
+ * 一个代理对可能被拆到相邻的两个分块中, 分块末尾编码不了的高代理项留在 carry 中, 与下一个分块的第一个字符一起编码.
+ * 语句结束时仍未配对的高代理项按编码错误抛出, 被截断的语句则直接丢弃它
+ *
+ * @author zhul
+ */
+public class ChannelRedoSink implements RedoSink {
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    /**
+     * 写模式, 保存上一个分块末尾未编码的字符 (最多一个高代理项), 再加上下一个分块的第一个字符或换行符
+     */
+    private final CharBuffer carry = CharBuffer.allocate(2);
+
+    public ChannelRedoSink(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    @Override
+    public void begin() {
+        encoder.reset();
+        carry.clear();
+    }
+
+    @Override
+    public void append(String chunk) throws IOException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        int offset = 0;
+        if (carry.position() > 0) {
+            carry.put(chunk.charAt(0));
+            offset = 1;
+            encodeCarry(false);
+        }
+        CharBuffer chars = CharBuffer.wrap(chunk, offset, chunk.length());
+        encode(chars, false);
+        while (chars.hasRemaining()) {
+            carry.put(chars.get());
+        }
+    }
+
+    @Override
+    public void end(boolean truncated) throws IOException {
+        if (truncated) {
+            // 截断处可能拆开了一个代理对
+            carry.clear();
+        }
+        carry.put('\n');
+        encodeCarry(true);
+        while (encoder.flush(buffer).isOverflow()) {
+            drain();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+    }
+
+    private void encodeCarry(boolean endOfInput) throws IOException {
+        carry.flip();
+        encode(carry, endOfInput);
+        carry.compact();
+    }
+
+    private void encode(CharBuffer chars, boolean endOfInput) throws IOException {
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, endOfInput);
+            if (result.isOverflow()) {
+                drain();
+            } else if (result.isUnderflow()) {
+                return;
+            } else {
+                result.throwException();
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,85 @@
+package util;
+
+/**
+ * 最小二乘拟合
+ *
+ * @author zhul
+ */
+public class CurveFit {
+
+    /**
+     * 拟合 y = c0 + c1 * x + c2 * x^2, 点数不足或矩阵奇异时返回 null
+     */
+    public static double[] quadratic(double[] x, double[] y) {
+        if (x.length < 3) {
+            return null;
+        }
+        // 正规方程 (X^T X) c = X^T y
+        double[][] a = new double[3][4];
+        for (int i = 0; i < x.length; i++) {
+            double[] powers = {1, x[i], x[i] * x[i]};
+            for (int r = 0; r < 3; r++) {
+                for (int c = 0; c < 3; c++) {
+                    a[r][c] += powers[r] * powers[c];
+                }
+                a[r][3] += powers[r] * y[i];
+            }
+        }
+        return solve(a);
+    }
+
+    /**
+     * 拟合 y = c0 + c1 * x, 点数不足或 x 全部相同时返回 null
+     */
+    public static double[] linear(double[] x, double[] y) {
+        if (x.length < 2) {
+            return null;
+        }
+        double sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+        for (int i = 0; i < x.length; i++) {
+            sumX += x[i];
+            sumY += y[i];
+            sumXX += x[i] * x[i];
+            sumXY += x[i] * y[i];
+        }
+        double n = x.length;
+        double denominator = n * sumXX - sumX * sumX;
+        if (Math.abs(denominator) < 1e-12) {
+            return null;
+        }
+        double slope = (n * sumXY - sumX * sumY) / denominator;
+        return new double[]{(sumY - slope * sumX) / n, slope};
+    }
+
+    private static double[] solve(double[][] a) {
+        int n = a.length;
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            for (int row = col + 1; row < n; row++) {
+                if (Math.abs(a[row][col]) > Math.abs(a[pivot][col])) {
+                    pivot = row;
+                }
+            }
+            if (Math.abs(a[pivot][col]) < 1e-12) {
+                return null;
+            }
+            double[] tmp = a[col];
+            a[col] = a[pivot];
+            a[pivot] = tmp;
+            for (int row = 0; row < n; row++) {
+                if (row == col) {
+                    continue;
+                }
+                double factor = a[row][col] / a[col][col];
+                for (int c = col; c <= n; c++) {
+                    a[row][c] -= factor * a[col][c];
+                }
+            }
+        }
+        double[] result = new double[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = a[i][n] / a[i][i];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,180 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LogMiner 挖掘策略: 数据字典来源以及 START_LOGMNR 的选项
+ *
+ * <p>
+ * 通过以下参数指定:
+ * <ul>
+ *     <li>-Dlogminer.dictionary=online|redo|flat: 数据字典来源, 默认 redo (DICT_FROM_REDO_LOGS + DDL_DICT_TRACKING)</li>
+ *     <li>-Dlogminer.dictionary.location / -Dlogminer.dictionary.file: flat 时字典文件的目录和文件名,
+ *     默认 /opt/oracle/database 和 dictionary.ora, 目录需要数据库可写 (UTL_FILE_DIR)</li>
+ *     <li>-Dlogminer.continuous=true: CONTINUOUS_MINE (19c 起不再支持)</li>
+ *     <li>-Dlogminer.committed.only=true: COMMITTED_DATA_ONLY</li>
+ *     <li>-Dlogminer.no.rowid=false: 不使用 NO_ROWID_IN_STMT, 默认使用</li>
+ * </ul>
+ *
+ * @author zhul
+ */
+public class MiningStrategy {
+
+    public enum DictionarySource {
+        ONLINE_CATALOG("online"),
+        REDO_LOGS("redo"),
+        FLAT_FILE("flat");
+
+        private final String key;
+
+        DictionarySource(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public static DictionarySource of(String key) {
+            for (DictionarySource source : values()) {
+                if (source.key.equalsIgnoreCase(key) || source.name().equalsIgnoreCase(key)) {
+                    return source;
+                }
+            }
+            throw new IllegalArgumentException("Unknown dictionary source: " + key);
+        }
+    }
+
+    private final DictionarySource dictionarySource;
+    private final String dictionaryLocation;
+    private final String dictionaryFileName;
+    private final boolean continuousMine;
+    private final boolean committedDataOnly;
+    private final boolean noRowidInStmt;
+
+    public MiningStrategy(
+            DictionarySource dictionarySource,
+            String dictionaryLocation,
+            String dictionaryFileName,
+            boolean continuousMine,
+            boolean committedDataOnly,
+            boolean noRowidInStmt
+    ) {
+        this.dictionarySource = dictionarySource;
+        this.dictionaryLocation = dictionaryLocation;
+        this.dictionaryFileName = dictionaryFileName;
+        this.continuousMine = continuousMine;
+        this.committedDataOnly = committedDataOnly;
+        this.noRowidInStmt = noRowidInStmt;
+    }
+
+    public static MiningStrategy fromSystemProperties() {
+        return new MiningStrategy(
+                DictionarySource.of(System.getProperty("logminer.dictionary", "redo")),
+                System.getProperty("logminer.dictionary.location", "/opt/oracle/database"),
+                System.getProperty("logminer.dictionary.file", "dictionary.ora"),
+                Boolean.getBoolean("logminer.continuous"),
+                Boolean.getBoolean("logminer.committed.only"),
+                Boolean.parseBoolean(System.getProperty("logminer.no.rowid", "true"))
+        );
+    }
+
+    /**
+     * 以当前策略的字典文件位置为基础, 返回所有数据字典来源和选项的组合
+     */
+    public List<MiningStrategy> allCombinations(List<DictionarySource> dictionarySources) {
+        List<MiningStrategy> strategies = new ArrayList<>();
+        for (DictionarySource source : dictionarySources) {
+            for (int flags = 0; flags < 8; flags++) {
+                strategies.add(new MiningStrategy(source, dictionaryLocation, dictionaryFileName,
+                        (flags & 4) != 0, (flags & 2) != 0, (flags & 1) != 0));
+            }
+        }
+        return strategies;
+    }
+
+    public MiningStrategy withDictionarySource(DictionarySource dictionarySource) {
+        return new MiningStrategy(dictionarySource, dictionaryLocation, dictionaryFileName,
+                continuousMine, committedDataOnly, noRowidInStmt);
+    }
+
+    /**
+     * 构建数据字典的语句, 使用在线数据字典时为 null
+     */
+    public String buildDictionaryStatement() {
+        switch (dictionarySource) {
+            case REDO_LOGS:
+                return "BEGIN DBMS_LOGMNR_D.BUILD (options => DBMS_LOGMNR_D.STORE_IN_REDO_LOGS); END;";
+            case FLAT_FILE:
+                return "BEGIN DBMS_LOGMNR_D.BUILD (dictionary_filename => '" + dictionaryFileName
+                        + "', dictionary_location => '" + dictionaryLocation + "', options => DBMS_LOGMNR_D.STORE_IN_FLAT_FILE); END;";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 数据字典在 redo 中时, 添加的日志文件必须包含最近一次构建的字典, 因此不能只添加到 end scn 为止的文件
+     */
+    public boolean isDictionaryInRedoLogs() {
+        return dictionarySource == DictionarySource.REDO_LOGS;
+    }
+
+    public String startLogMinerStatement(long startScn, long endScn) {
+        StringBuilder options = new StringBuilder(128);
+        switch (dictionarySource) {
+            case ONLINE_CATALOG:
+                options.append("DBMS_LOGMNR.DICT_FROM_ONLINE_CATALOG");
+                break;
+            case REDO_LOGS:
+                options.append("DBMS_LOGMNR.DICT_FROM_REDO_LOGS + DBMS_LOGMNR.DDL_DICT_TRACKING");
+                break;
+            default:
+                // 使用字典文件时不需要指定字典来源选项
+                options.append("0");
+                break;
+        }
+        if (continuousMine) {
+            options.append(" + DBMS_LOGMNR.CONTINUOUS_MINE");
+        }
+        if (committedDataOnly) {
+            options.append(" + DBMS_LOGMNR.COMMITTED_DATA_ONLY");
+        }
+        if (noRowidInStmt) {
+            options.append(" + DBMS_LOGMNR.NO_ROWID_IN_STMT");
+        }
+        String dictionaryFile = dictionarySource == DictionarySource.FLAT_FILE
+                ? "DICTFILENAME => '" + dictionaryLocation + "/" + dictionaryFileName + "', "
+                : "";
+        return "BEGIN sys.dbms_logmnr.start_logmnr(" +
+                "startScn => '" + startScn + "', " +
+                "endScn => '" + endScn + "', " +
+                dictionaryFile +
+                "OPTIONS => " + options + ");" +
+                "END;";
+    }
+
+    public DictionarySource getDictionarySource() {
+        return dictionarySource;
+    }
+
+    public boolean isContinuousMine() {
+        return continuousMine;
+    }
+
+    public boolean isCommittedDataOnly() {
+        return committedDataOnly;
+    }
+
+    public boolean isNoRowidInStmt() {
+        return noRowidInStmt;
+    }
+
+    @Override
+    public String toString() {
+        return "MiningStrategy{dictionary=" + dictionarySource.getKey()
+                + (dictionarySource == DictionarySource.FLAT_FILE ? "(" + dictionaryLocation + "/" + dictionaryFileName + ")" : "")
+                + ", continuous=" + continuousMine + ", committedOnly=" + committedDataOnly + ", noRowid=" + noRowidInStmt + "}";
+    }
+}
@@ -44,6 +44,24 @@ public class OracleHelper {
         }
     }
 
+    /**
+     * 返回当前会话的统计值 (V$MYSTAT), 查询失败时返回 -1
+     */
+    public static long getMetric(Connection conn, String name) {
+        String sql = "SELECT VALUE FROM v$statname n, v$mystat m WHERE n.name=? AND n.statistic#=m.statistic#";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getLong(1);
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.error("", e);
+        }
+        return -1;
+    }
+
     public static void printPGA(Connection connection) {
         String sql = " SELECT a.PGA_USED_MEM,a.PGA_ALLOC_MEM,a.PGA_FREEABLE_MEM,a.PGA_MAX_MEM FROM V$PROCESS a WHERE ADDR IN (SELECT PADDR FROM V$SESSION WHERE SID = (SELECT DISTINCT SID FROM V$MYSTAT))";
 
@@ -0,0 +1,135 @@
+package util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 流式拼接跨多行的 SQL_REDO
+ *
+ * <p>
+ * SQL_REDO 超过 4000 字节 (LOB 列尤其常见) 时, LogMiner 会把它拆成多行返回, 前面各行的 CSF 为 1.
+ * 这里逐行把 SQL_REDO 交给 {@link RedoSink}, 不在内存中缓存整条语句; 累计超过 limitBytes (按 UTF-8 计算) 后,
+ * 剩余的分块不再输出, 但仍会消费掉, 保证结果集停在该语句的最后一行.
+ * <p>
+ * 统计值是线程安全的, 同一个实例可以被多个挖掘会话共享.
+ *
+ * @author zhul
+ */
+public class RedoReassembler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedoReassembler.class);
+
+    private static final int SQL_REDO = 2;
+
+    private static final int CSF = 6;
+
+    private final long limitBytes;
+
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder truncatedStatements = new LongAdder();
+    private final LongAdder truncatedBytes = new LongAdder();
+    private final AtomicLong maxStatementBytes = new AtomicLong();
+
+    /**
+     * @param limitBytes 单条语句输出的字节上限, 小于等于 0 表示不限制
+     */
+    public RedoReassembler(long limitBytes) {
+        this.limitBytes = limitBytes <= 0 ? Long.MAX_VALUE : limitBytes;
+    }
+
+    /**
+     * 从结果集当前行开始拼接一条 SQL_REDO, 返回时结果集停在该语句的最后一行
+     *
+     * @return 该语句的字节数 (包括被截断的部分), SQL_REDO 为 null 时返回 -1, 此时不调用 sink
+     */
+    public long reassemble(ResultSet rs, RedoSink sink) throws SQLException, IOException {
+        String chunk = rs.getString(SQL_REDO);
+        if (chunk == null) {
+            return -1;
+        }
+        statements.increment();
+        sink.begin();
+        long written = 0;
+        long total = 0;
+        boolean truncated = false;
+
+        // 0 - indicates SQL_REDO is contained within the same row
+        // 1 - indicates that either SQL_REDO is greater than 4000 bytes in size and is continued in
+        // the next row returned by the ResultSet
+        while (true) {
+            long bytes = utf8Length(chunk);
+            total += bytes;
+            if (!truncated && written + bytes <= limitBytes) {
+                sink.append(chunk);
+                written += bytes;
+            } else {
+                truncated = true;
+            }
+            if (rs.getInt(CSF) != 1) {
+                break;
+            }
+            if (!rs.next()) {
+                LOGGER.warn("Result set ended in the middle of a continued SQL_REDO after {} bytes", total);
+                break;
+            }
+            chunk = rs.getString(SQL_REDO);
+            if (chunk == null) {
+                chunk = "";
+            }
+        }
+
+        sink.end(truncated);
+        maxStatementBytes.accumulateAndGet(total, Math::max);
+        if (truncated) {
+            truncatedStatements.increment();
+            truncatedBytes.add(total - written);
+            LOGGER.warn("SQL_REDO of {} bytes was truncated to the limit of {} bytes", total, limitBytes);
+        }
+        return total;
+    }
+
+    public long getStatements() {
+        return statements.sum();
+    }
+
+    public long getTruncatedStatements() {
+        return truncatedStatements.sum();
+    }
+
+    public long getTruncatedBytes() {
+        return truncatedBytes.sum();
+    }
+
+    public long getMaxStatementBytes() {
+        return maxStatementBytes.get();
+    }
+
+    public void logMetrics() {
+        LOGGER.info("SQL_REDO statements: {}, truncated statements: {}, truncated bytes: {}, max statement bytes: {}",
+                getStatements(), getTruncatedStatements(), getTruncatedBytes(), getMaxStatementBytes());
+    }
+
+    static long utf8Length(String s) {
+        long length = 0;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
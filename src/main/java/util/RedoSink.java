@@ -0,0 +1,29 @@
+package util;
+
+import java.io.IOException;
+
+/**
+ * 接收 {@link RedoReassembler} 分块输出的 SQL_REDO
+ *
+ * <p>
+ * 一条 SQL_REDO 对应一次 {@link #begin()}, 若干次 {@link #append(String)} 和一次 {@link #end(boolean)}
+ *
+ * @author zhul
+ */
+public interface RedoSink {
+
+    void begin() throws IOException;
+
+    /**
+     * @param chunk V$LOGMNR_CONTENTS 中一行的 SQL_REDO, 最多 4000 字节
+     */
+    void append(String chunk) throws IOException;
+
+    /**
+     * @param truncated 该语句是否因为超出字节上限被截断
+     */
+    void end(boolean truncated) throws IOException;
+
+    default void flush() throws IOException {
+    }
+}
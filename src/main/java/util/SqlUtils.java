@@ -3,6 +3,7 @@ package util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.Duration;
@@ -15,10 +16,6 @@ public class SqlUtils {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SqlUtils.class);
 
-    private static final int SQL_REDO = 2;
-
-    private static final int CSF = 6;
-
     private static final List<String> EXCLUDED_SCHEMAS = Collections.unmodifiableList(Arrays.asList("appqossys", "audsys",
             "ctxsys", "dvsys", "dbsfwuser", "dbsnmp", "gsmadmin_internal", "lbacsys", "mdsys", "ojvmsys", "olapsys",
             "orddata", "ordsys", "outln", "sys", "system", "wmsys", "xdb"));
@@ -36,46 +33,129 @@ public class SqlUtils {
     private static final String ARCHIVE_DEST_STATUS_VIEW = "V$ARCHIVE_DEST_STATUS";
 
     /**
-     * 这个值用来控制 log miner add file 的时候,是添加从 start scn 之后的所有归档文件, 还是添加从 start scn 到 end scn 之间的文件
+     * 是否挖掘 LOB 相关的操作 (SEL_LOB_LOCATOR, LOB_WRITE, LOB_TRIM, LOB_ERASE)
+     */
+    public static final boolean MINE_LOB_OPERATIONS = Boolean.getBoolean("logminer.lob.enabled");
+
+    /**
+     * 单条 SQL_REDO 的字节上限, 超过的部分被截断
+     */
+    public static final long LOB_LIMIT_BYTES = Long.getLong("logminer.lob.limit.bytes", 40L * 1024 * 1024);
+
+    private static final RedoReassembler REDO_REASSEMBLER = new RedoReassembler(LOB_LIMIT_BYTES);
+
+    /**
+     * 在线日志查询, 只访问 V$LOG 和 V$LOGFILE, 是否已被归档由调用方结合归档日志索引来判断
+     */
+    public static String onlineLogsQuery() {
+        final StringBuilder sb = new StringBuilder(512);
+        sb.append("SELECT MIN(F.MEMBER) AS FILE_NAME, L.FIRST_CHANGE# FIRST_CHANGE, L.NEXT_CHANGE# NEXT_CHANGE, ");
+        sb.append("L.STATUS, L.SEQUENCE# AS SEQ, L.THREAD# AS THREAD ");
+        sb.append("FROM ").append(LOGFILE_VIEW).append(" F, ").append(LOG_VIEW).append(" L ");
+        sb.append("WHERE F.GROUP# = L.GROUP# ");
+        sb.append("GROUP BY F.GROUP#, L.FIRST_CHANGE#, L.NEXT_CHANGE#, L.STATUS, L.SEQUENCE#, L.THREAD# ");
+        return sb.append("ORDER BY 6, 5").toString();
+    }
+
+    /**
+     * scn 探测用的在线日志查询, 只访问 V$LOG (每个日志组一行), 不关联 V$LOGFILE 和 V$ARCHIVED_LOG.
+     * 未使用过的日志组 FIRST_CHANGE# 为 0, SEQUENCE# 也为 0, 会把最小 scn 和最小 SEQUENCE# 拉低, 因此排除
+     */
+    public static String onlineLogsScnQuery() {
+        return "SELECT THREAD#, SEQUENCE#, FIRST_CHANGE#, STATUS FROM " + LOG_VIEW
+                + " WHERE STATUS <> 'UNUSED' AND FIRST_CHANGE# > 0";
+    }
+
+    /**
+     * scn 探测用的有界归档日志查询: 每个 THREAD# 只看 SEQUENCE# 不小于给定值, 并且 FIRST_TIME 在最近 hours 小时内的归档日志,
+     * 只返回聚合结果
      *
-     * fixme: 只添加 <start scn - end scn> 之间的文件时, log miner 无法启动, 因为 data dictionary 不完整
+     * @param minSequences 每个 THREAD# 需要查看的最小 SEQUENCE#
      */
-    public static final boolean MINE_LOG_WITH_END_SCN = false;
+    public static String recentArchivedLogsScnQuery(Map<Integer, Long> minSequences, long hours) {
+        final StringBuilder sb = new StringBuilder(512);
+        sb.append("SELECT MIN(A.FIRST_CHANGE#), MAX(A.FIRST_CHANGE#), COUNT(*) ");
+        sb.append("FROM ").append(ARCHIVED_LOG_VIEW).append(" A ");
+        sb.append("WHERE A.NAME IS NOT NULL ");
+        sb.append("AND A.ARCHIVED = 'YES' ");
+        sb.append("AND A.STATUS = 'A' ");
+        if (!minSequences.isEmpty()) {
+            StringJoiner threads = new StringJoiner(" OR ", "AND (", ") ");
+            for (Map.Entry<Integer, Long> entry : minSequences.entrySet()) {
+                threads.add("(A.THREAD# = " + entry.getKey() + " AND A.SEQUENCE# >= " + entry.getValue() + ")");
+            }
+            sb.append(threads);
+        }
+        if (hours > 0) {
+            sb.append("AND A.FIRST_TIME >= SYSDATE - (").append(hours).append("/24) ");
+        }
+        return sb.append("AND A.DEST_ID IN (").append(localArchiveLogDestinationsOnlyQuery(null)).append(")").toString();
+    }
 
-    public static String allMinableLogsQuery(
+    /**
+     * 归档日志查询
+     *
+     * @param lastSequences 每个 THREAD# 已加载的最大 SEQUENCE#, 只查询比它大的归档日志, 用于增量加载
+     * @param scn           只查询 NEXT_CHANGE# 大于该值的归档日志
+     */
+    public static String archivedLogsQuery(
+            Map<Integer, Long> lastSequences,
             long scn,
-            long endScn, Duration archiveLogRetention,
-            boolean archiveLogOnlyMode,
+            Duration archiveLogRetention,
             String archiveDestinationName
     ) {
-        final StringBuilder sb = new StringBuilder();
-        if (!archiveLogOnlyMode) {
-            sb.append("SELECT MIN(F.MEMBER) AS FILE_NAME, L.FIRST_CHANGE# FIRST_CHANGE, L.NEXT_CHANGE# NEXT_CHANGE, L.ARCHIVED, ");
-            sb.append("L.STATUS, 'ONLINE' AS TYPE, L.SEQUENCE# AS SEQ, 'NO' AS DICT_START, 'NO' AS DICT_END ");
-            sb.append("FROM ").append(LOGFILE_VIEW).append(" F, ").append(LOG_VIEW).append(" L ");
-            sb.append("LEFT JOIN ").append(ARCHIVED_LOG_VIEW).append(" A ");
-            sb.append("ON A.FIRST_CHANGE# = L.FIRST_CHANGE# AND A.NEXT_CHANGE# = L.NEXT_CHANGE# ");
-            sb.append("WHERE A.FIRST_CHANGE# IS NULL ");
-            sb.append("AND F.GROUP# = L.GROUP# ");
-            sb.append("GROUP BY F.GROUP#, L.FIRST_CHANGE#, L.NEXT_CHANGE#, L.STATUS, L.ARCHIVED, L.SEQUENCE# ");
-            sb.append("UNION ");
-        }
-        sb.append("SELECT A.NAME AS FILE_NAME, A.FIRST_CHANGE# FIRST_CHANGE, A.NEXT_CHANGE# NEXT_CHANGE, 'YES', ");
-        sb.append("NULL, 'ARCHIVED', A.SEQUENCE# AS SEQ, A.DICTIONARY_BEGIN, A.DICTIONARY_END ");
+        final StringBuilder sb = new StringBuilder(512);
+        sb.append("SELECT A.NAME AS FILE_NAME, A.FIRST_CHANGE# FIRST_CHANGE, A.NEXT_CHANGE# NEXT_CHANGE, ");
+        sb.append("A.SEQUENCE# AS SEQ, A.THREAD# AS THREAD ");
         sb.append("FROM ").append(ARCHIVED_LOG_VIEW).append(" A ");
         sb.append("WHERE A.NAME IS NOT NULL ");
         sb.append("AND A.ARCHIVED = 'YES' ");
         sb.append("AND A.STATUS = 'A' ");
-        sb.append("AND A.NEXT_CHANGE# > ").append(scn).append(" ");
-        if (MINE_LOG_WITH_END_SCN) {
-            sb.append("AND A.FIRST_CHANGE# <= ").append(endScn).append(" ");
+        if (!lastSequences.isEmpty()) {
+            StringJoiner threads = new StringJoiner(",");
+            sb.append("AND (");
+            for (Map.Entry<Integer, Long> entry : lastSequences.entrySet()) {
+                threads.add(String.valueOf(entry.getKey()));
+                sb.append("(A.THREAD# = ").append(entry.getKey());
+                sb.append(" AND A.SEQUENCE# > ").append(entry.getValue()).append(") OR ");
+            }
+            sb.append("A.THREAD# NOT IN (").append(threads).append(")) ");
         }
+        sb.append("AND A.NEXT_CHANGE# > ").append(scn).append(" ");
         sb.append("AND A.DEST_ID IN (").append(localArchiveLogDestinationsOnlyQuery(archiveDestinationName)).append(") ");
         if (!archiveLogRetention.isNegative() && !archiveLogRetention.isZero()) {
             sb.append("AND A.FIRST_TIME >= SYSDATE - (").append(archiveLogRetention.toHours()).append("/24) ");
         }
+        return sb.append("ORDER BY 5, 4").toString();
+    }
 
-        return sb.append("ORDER BY 7").toString();
+    /**
+     * 已加载的归档日志中不再可用的日志: 已被删除 (STATUS 不为 'A'), 或者 FIRST_TIME 超出了保留时长
+     *
+     * @param lastSequences 每个 THREAD# 已加载的最大 SEQUENCE#, 只检查不大于它的归档日志
+     * @param scn           只检查 NEXT_CHANGE# 大于该值的归档日志
+     */
+    public static String unavailableArchivedLogsQuery(
+            Map<Integer, Long> lastSequences,
+            long scn,
+            Duration archiveLogRetention,
+            String archiveDestinationName
+    ) {
+        final StringBuilder sb = new StringBuilder(512);
+        sb.append("SELECT A.THREAD#, A.SEQUENCE# ");
+        sb.append("FROM ").append(ARCHIVED_LOG_VIEW).append(" A ");
+        sb.append("WHERE A.NEXT_CHANGE# > ").append(scn).append(" ");
+        sb.append("AND A.DEST_ID IN (").append(localArchiveLogDestinationsOnlyQuery(archiveDestinationName)).append(") ");
+        StringJoiner threads = new StringJoiner(" OR ", "AND (", ") ");
+        for (Map.Entry<Integer, Long> entry : lastSequences.entrySet()) {
+            threads.add("(A.THREAD# = " + entry.getKey() + " AND A.SEQUENCE# <= " + entry.getValue() + ")");
+        }
+        sb.append(threads);
+        sb.append("AND (A.STATUS <> 'A'");
+        if (!archiveLogRetention.isNegative() && !archiveLogRetention.isZero()) {
+            sb.append(" OR A.FIRST_TIME < SYSDATE - (").append(archiveLogRetention.toHours()).append("/24)");
+        }
+        return sb.append(")").toString();
     }
 
     public static String deleteLogFileStatement(String fileName) {
@@ -86,29 +166,6 @@ public class SqlUtils {
         return "BEGIN sys.dbms_logmnr.add_logfile(LOGFILENAME => '" + fileName + "', OPTIONS => " + option + ");END;";
     }
 
-    public static String startLogMinerStatement(long startScn, long endScn, boolean isContinuousMining) {
-        String miningStrategy;
-        if (true) {
-            miningStrategy = "DBMS_LOGMNR.DICT_FROM_REDO_LOGS + DBMS_LOGMNR.DDL_DICT_TRACKING ";
-        } else {
-            miningStrategy = "DBMS_LOGMNR.DICT_FROM_ONLINE_CATALOG ";
-        }
-        if (isContinuousMining) {
-            miningStrategy += " + DBMS_LOGMNR.CONTINUOUS_MINE ";
-        }
-        String dataDictionaryDestination = "";
-        if (MINE_LOG_WITH_END_SCN) {
-            dataDictionaryDestination = " DICTFILENAME => '/opt/oracle/database/dictionary.ora', ";
-        }
-        return "BEGIN sys.dbms_logmnr.start_logmnr(" +
-                "startScn => '" + startScn + "', " +
-                "endScn => '" + endScn + "', " +
-                dataDictionaryDestination +
-                "OPTIONS => " + miningStrategy +
-                " + DBMS_LOGMNR.NO_ROWID_IN_STMT);" +
-                "END;";
-    }
-
     private static String localArchiveLogDestinationsOnlyQuery(String archiveDestinationName) {
         final StringBuilder query = new StringBuilder(256);
         query.append("SELECT DEST_ID FROM ").append(ARCHIVE_DEST_STATUS_VIEW).append(" WHERE ");
@@ -121,10 +178,24 @@ public class SqlUtils {
         return query.toString();
     }
 
-    public static String archiveLogBytesSizeQuery(List<String> logFileNames) {
-        return "SELECT SUM(blocks*block_size) FROM " + ARCHIVED_LOG_VIEW + " WHERE NAME IN ('" +
-                String.join("','", logFileNames) +
-                "')";
+    /**
+     * 每个日志文件的字节数: 归档日志取 BLOCKS * BLOCK_SIZE, 在线日志取所在日志组的 V$LOG.BYTES
+     */
+    public static String logFileBytesQuery(List<String> logFileNames) {
+        String names = "('" + String.join("','", logFileNames) + "')";
+        return "SELECT A.NAME, A.BLOCKS * A.BLOCK_SIZE FROM " + ARCHIVED_LOG_VIEW + " A WHERE A.NAME IN " + names +
+                " UNION ALL SELECT F.MEMBER, L.BYTES FROM " + LOGFILE_VIEW + " F, " + LOG_VIEW + " L" +
+                " WHERE F.GROUP# = L.GROUP# AND F.MEMBER IN " + names;
+    }
+
+    /**
+     * 分析模式使用的查询, 只投影统计需要的列, 不过滤操作类型
+     *
+     * @param redoBytes 是否投影 LENGTHB(SQL_REDO), 投影后 LogMiner 需要为每一行重建 SQL_REDO
+     */
+    public static String profileLogMinerContents(boolean redoBytes) {
+        return "SELECT SCN, OPERATION_CODE, SEG_OWNER, TABLE_NAME, XID" + (redoBytes ? ", LENGTHB(SQL_REDO)" : "")
+                + " FROM " + LOGMNR_CONTENTS_VIEW + " WHERE SCN > ? AND SCN <= ?";
     }
 
     public static String queryLogMinerContents() {
@@ -152,7 +223,7 @@ public class SqlUtils {
             // are not part of the inclusion/exclusion lists.
             query.append(" OR ").append(buildDdlPredicate()).append(" ");
             // Insert, Update, Delete, SelectLob, LobWrite, LobTrim, and LobErase
-            if (false) {
+            if (MINE_LOB_OPERATIONS) {
                 query.append(") OR (OPERATION_CODE IN (1,2,3,9,10,11,29) ");
             }
             else {
@@ -161,7 +232,7 @@ public class SqlUtils {
         }
         else {
             // Insert, Update, Delete, SelectLob, LobWrite, LobTrim, and LobErase
-            if (false) {
+            if (MINE_LOB_OPERATIONS) {
                 query.append(") OR ((OPERATION_CODE IN (1,2,3,9,10,11,29) ");
             }
             else {
@@ -225,62 +296,65 @@ public class SqlUtils {
         return predicate.toString();
     }
 
+    /**
+     * 读取当前行的 SQL_REDO, 跨多行时拼接为一个字符串, 超过 {@link #LOB_LIMIT_BYTES} 的部分被截断
+     */
     public static String getSqlRedo(ResultSet rs) throws SQLException {
-        int lobLimitCounter = 9; // todo : decide on approach (XStream chunk option) and Lob limit
-
-        String redoSql = rs.getString(SQL_REDO);
-        if (redoSql == null) {
-            return null;
+        StringBuilderRedoSink sink = new StringBuilderRedoSink();
+        try {
+            if (REDO_REASSEMBLER.reassemble(rs, sink) < 0) {
+                return null;
+            }
+        } catch (IOException e) {
+            throw new SQLException("Failed to reassemble SQL_REDO", e);
         }
+        return sink.builder.toString();
+    }
 
-        StringBuilder result = new StringBuilder(redoSql);
-        int csf = rs.getInt(CSF);
-
-        // 0 - indicates SQL_REDO is contained within the same row
-        // 1 - indicates that either SQL_REDO is greater than 4000 bytes in size and is continued in
-        // the next row returned by the ResultSet
-        while (csf == 1) {
-            rs.next();
-            if (lobLimitCounter-- == 0) {
-                LOGGER.warn("LOB value was truncated due to the connector limitation of {} MB", 40);
-                break;
-            }
+    /**
+     * 读取当前行的 SQL_REDO 并流式写入 sink, 不在内存中拼接整条语句
+     *
+     * @return 语句的字节数, SQL_REDO 为 null 时返回 -1
+     */
+    public static long streamSqlRedo(ResultSet rs, RedoSink sink) throws SQLException, IOException {
+        return REDO_REASSEMBLER.reassemble(rs, sink);
+    }
 
-            redoSql = rs.getString(SQL_REDO);
-            result.append(redoSql);
-            csf = rs.getInt(CSF);
-        }
+    public static RedoReassembler redoReassembler() {
+        return REDO_REASSEMBLER;
+    }
+
+    public static String currentSessionQuery() {
+        return "SELECT SYS_CONTEXT('USERENV', 'SID'), S.SERIAL#, SYS_CONTEXT('USERENV', 'INSTANCE') " +
+                "FROM V$SESSION S WHERE S.SID = SYS_CONTEXT('USERENV', 'SID')";
+    }
 
-        return result.toString();
+    /**
+     * @param session 'sid,serial#,@inst_id' 格式的会话标识
+     */
+    public static String killSessionStatement(String session) {
+        return "ALTER SYSTEM KILL SESSION '" + session + "' IMMEDIATE";
     }
 
     public static String showSGA() {
         return "SELECT * FROM V$SGA";
     }
 
-    public static String getMinAndMaxScnQuery() {
-        return "select min(first_change), max(first_change), max(next_change)\n" +
-                "from (\n" +
-                "         SELECT L.FIRST_CHANGE# FIRST_CHANGE,\n" +
-                "                L.NEXT_CHANGE#  NEXT_CHANGE,\n" +
-                "                L.SEQUENCE#   AS SEQ\n" +
-                "         FROM V$LOGFILE F,\n" +
-                "              V$LOG L\n" +
-                "                  LEFT JOIN V$ARCHIVED_LOG A ON A.FIRST_CHANGE# = L.FIRST_CHANGE# AND A.NEXT_CHANGE# = L.NEXT_CHANGE#\n" +
-                "         WHERE A.FIRST_CHANGE# IS NULL\n" +
-                "           AND F.GROUP# = L.GROUP#\n" +
-                "         GROUP BY F.GROUP#, L.FIRST_CHANGE#, L.NEXT_CHANGE#, L.STATUS, L.ARCHIVED, L.SEQUENCE#\n" +
-                "         UNION\n" +
-                "         SELECT A.FIRST_CHANGE# FIRST_CHANGE,\n" +
-                "                A.NEXT_CHANGE#  NEXT_CHANGE,\n" +
-                "                A.SEQUENCE# AS  SEQ\n" +
-                "         FROM V$ARCHIVED_LOG A\n" +
-                "         WHERE A.NAME IS NOT NULL\n" +
-                "           AND A.ARCHIVED = 'YES'\n" +
-                "           AND A.STATUS = 'A'\n" +
-                "           AND A.NEXT_CHANGE# > 0\n" +
-                "           AND A.DEST_ID IN\n" +
-                "               (SELECT DEST_ID FROM V$ARCHIVE_DEST_STATUS WHERE STATUS = 'VALID' AND TYPE = 'LOCAL' AND ROWNUM = 1)\n" +
-                "         ORDER BY 3) a";
+    private static class StringBuilderRedoSink implements RedoSink {
+
+        private final StringBuilder builder = new StringBuilder();
+
+        @Override
+        public void begin() {
+        }
+
+        @Override
+        public void append(String chunk) {
+            builder.append(chunk);
+        }
+
+        @Override
+        public void end(boolean truncated) {
+        }
     }
 }
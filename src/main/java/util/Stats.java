@@ -0,0 +1,168 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * 回归检测用到的统计函数
+ *
+ * <p>
+ * t 分布的累积分布函数通过正则化不完全 beta 函数计算 (连分式展开, 见 Numerical Recipes 6.4), 不依赖第三方库.
+ *
+ * @author zhul
+ */
+public class Stats {
+
+    private static final int MAX_ITERATIONS = 300;
+
+    private static final double EPSILON = 1e-14;
+
+    private static final double TINY = 1e-300;
+
+    public static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    /**
+     * 样本方差 (除以 n - 1)
+     */
+    public static double variance(double[] values) {
+        double mean = mean(values);
+        double sum = 0;
+        for (double value : values) {
+            sum += (value - mean) * (value - mean);
+        }
+        return sum / (values.length - 1);
+    }
+
+    /**
+     * Welch t 检验的单侧 p 值, 备择假设为 candidate 的均值大于 baseline 的均值. 两组都至少需要 2 个样本
+     */
+    public static double welchGreaterPValue(double[] baseline, double[] candidate) {
+        if (baseline.length < 2 || candidate.length < 2) {
+            throw new IllegalArgumentException("Welch's t-test needs at least 2 samples in each group");
+        }
+        double baselineMean = mean(baseline);
+        double candidateMean = mean(candidate);
+        double baselineError = variance(baseline) / baseline.length;
+        double candidateError = variance(candidate) / candidate.length;
+        double standardError = Math.sqrt(baselineError + candidateError);
+        if (standardError == 0) {
+            return candidateMean > baselineMean ? 0 : 1;
+        }
+        double t = (candidateMean - baselineMean) / standardError;
+        double df = (baselineError + candidateError) * (baselineError + candidateError)
+                / (baselineError * baselineError / (baseline.length - 1) + candidateError * candidateError / (candidate.length - 1));
+        return 1 - studentTCdf(t, df);
+    }
+
+    /**
+     * Holm-Bonferroni 校正后的 p 值: 从小到大第 k 个 (从 0 开始) p 值乘以 m - k, 再保证单调不减, 不超过 1.
+     * 与校正前的顺序一致, 用校正后的 p 值和 alpha 比较即可控制整体的误报率
+     */
+    public static double[] holmAdjust(double[] pValues) {
+        int m = pValues.length;
+        Integer[] order = new Integer[m];
+        for (int i = 0; i < m; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(pValues[a], pValues[b]));
+        double[] adjusted = new double[m];
+        double max = 0;
+        for (int k = 0; k < m; k++) {
+            max = Math.max(max, Math.min(1, (m - k) * pValues[order[k]]));
+            adjusted[order[k]] = max;
+        }
+        return adjusted;
+    }
+
+    public static double studentTCdf(double t, double df) {
+        double tail = 0.5 * regularizedIncompleteBeta(df / (df + t * t), df / 2, 0.5);
+        return t >= 0 ? 1 - tail : tail;
+    }
+
+    /**
+     * 正则化不完全 beta 函数 I_x(a, b)
+     */
+    public static double regularizedIncompleteBeta(double x, double a, double b) {
+        if (x <= 0) {
+            return 0;
+        }
+        if (x >= 1) {
+            return 1;
+        }
+        double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b) + a * Math.log(x) + b * Math.log(1 - x));
+        // 连分式在 x < (a + 1) / (a + b + 2) 时收敛快, 否则利用 I_x(a, b) = 1 - I_{1-x}(b, a)
+        if (x < (a + 1) / (a + b + 2)) {
+            return front * betaContinuedFraction(x, a, b) / a;
+        }
+        return 1 - front * betaContinuedFraction(1 - x, b, a) / b;
+    }
+
+    private static double betaContinuedFraction(double x, double a, double b) {
+        double qab = a + b;
+        double qap = a + 1;
+        double qam = a - 1;
+        double c = 1;
+        double d = 1 - qab * x / qap;
+        if (Math.abs(d) < TINY) {
+            d = TINY;
+        }
+        d = 1 / d;
+        double h = d;
+        for (int m = 1; m <= MAX_ITERATIONS; m++) {
+            int m2 = 2 * m;
+            double aa = m * (b - m) * x / ((qam + m2) * (a + m2));
+            d = 1 + aa * d;
+            if (Math.abs(d) < TINY) {
+                d = TINY;
+            }
+            c = 1 + aa / c;
+            if (Math.abs(c) < TINY) {
+                c = TINY;
+            }
+            d = 1 / d;
+            h *= d * c;
+            aa = -(a + m) * (qab + m) * x / ((a + m2) * (qap + m2));
+            d = 1 + aa * d;
+            if (Math.abs(d) < TINY) {
+                d = TINY;
+            }
+            c = 1 + aa / c;
+            if (Math.abs(c) < TINY) {
+                c = TINY;
+            }
+            d = 1 / d;
+            double delta = d * c;
+            h *= delta;
+            if (Math.abs(delta - 1) < EPSILON) {
+                break;
+            }
+        }
+        return h;
+    }
+
+    /**
+     * ln(Gamma(x)), Lanczos 近似 (g = 7, n = 9)
+     */
+    static double logGamma(double x) {
+        if (x < 0.5) {
+            return Math.log(Math.PI / Math.abs(Math.sin(Math.PI * x))) - logGamma(1 - x);
+        }
+        double[] coefficients = {
+                0.99999999999980993, 676.5203681218851, -1259.1392167224028, 771.32342877765313,
+                -176.61502916214059, 12.507343278686905, -0.13857109526572012, 9.9843695780195716e-6,
+                1.5056327351493116e-7
+        };
+        x -= 1;
+        double sum = coefficients[0];
+        for (int i = 1; i < coefficients.length; i++) {
+            sum += coefficients[i] / (x + i);
+        }
+        double t = x + 7.5;
+        return 0.5 * Math.log(2 * Math.PI) + (x + 0.5) * Math.log(t) - t + Math.log(sum);
+    }
+}
@@ -0,0 +1,40 @@
+package util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 创建执行阻塞 I/O 任务的线程池
+ *
+ * <p>
+ * 运行在 JDK 21 及以上时通过反射使用虚拟线程 (Executors.newVirtualThreadPerTaskExecutor), 否则使用固定大小的守护线程池,
+ * 项目本身仍然按 Java 8 编译.
+ *
+ * @author zhul
+ */
+public class TaskExecutors {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskExecutors.class);
+
+    public static ExecutorService newBlockingTaskExecutor(String name, int platformThreads) {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ExecutorService executor = (ExecutorService) method.invoke(null);
+            LOGGER.info("Using virtual threads for {}", name);
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            LOGGER.info("Virtual threads are not available, using {} platform threads for {}", platformThreads, name);
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(platformThreads, r -> {
+            Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,130 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author zhul
+ */
+public class CheckpointStoreTest {
+
+    private static final String URL = "jdbc:oracle:thin:@localhost:1521/ORCLCDB";
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("checkpoint-store-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void encodeAndDecodeRoundTrip() {
+        Checkpoint checkpoint = new Checkpoint(URL, 100, 900, 500, 450, 3, 1234567890L);
+        String line = CheckpointStore.encode(checkpoint);
+        assertEquals('\n', line.charAt(line.length() - 1));
+
+        Checkpoint decoded = CheckpointStore.decode(line.substring(0, line.length() - 1));
+        assertNotNull(decoded);
+        assertEquals(URL, decoded.getUrl());
+        assertEquals(100, decoded.getRangeStartScn());
+        assertEquals(900, decoded.getRangeEndScn());
+        assertEquals(500, decoded.getLastProcessedScn());
+        assertEquals(450, decoded.getRestartScn());
+        assertEquals(3, decoded.getOpenTransactions());
+        assertEquals(1234567890L, decoded.getTimestamp());
+    }
+
+    @Test
+    public void tornLineIsRejected() {
+        String line = encodeWithoutNewline(new Checkpoint(URL, 100, 900, 500, 450, 3, 1L));
+        for (int length = 0; length < line.length(); length++) {
+            assertNull("prefix of length " + length, CheckpointStore.decode(line.substring(0, length)));
+        }
+    }
+
+    @Test
+    public void corruptedFieldIsRejected() {
+        String line = encodeWithoutNewline(new Checkpoint(URL, 100, 900, 500, 450, 3, 1L));
+        assertNull(CheckpointStore.decode(line.replace("\t500\t", "\t501\t")));
+    }
+
+    @Test
+    public void corruptedCrcIsRejected() {
+        String line = encodeWithoutNewline(new Checkpoint(URL, 100, 900, 500, 450, 3, 1L));
+        assertNull(CheckpointStore.decode(line + "0"));
+        assertNull(CheckpointStore.decode(line.substring(0, line.lastIndexOf('\t') + 1) + "abc"));
+    }
+
+    @Test
+    public void unknownVersionIsRejected() {
+        String record = "v0\t" + URL + "\t100\t900\t500\t450\t3\t1";
+        assertNull(CheckpointStore.decode(record + "\t" + crc(record)));
+    }
+
+    @Test
+    public void wrongFieldCountIsRejected() {
+        String record = "v1\t" + URL + "\t100\t900\t500\t450\t3";
+        assertNull(CheckpointStore.decode(record + "\t" + crc(record)));
+    }
+
+    @Test
+    public void nonNumericFieldIsRejected() {
+        String record = "v1\t" + URL + "\t100\t900\tabc\t450\t3\t1";
+        assertNull(CheckpointStore.decode(record + "\t" + crc(record)));
+    }
+
+    @Test
+    public void loadKeepsLatestAndSkipsTornLastLine() throws IOException {
+        Path file = dir.resolve("checkpoints.log");
+        try (CheckpointStore store = new CheckpointStore(file, 1, 0)) {
+            store.append(new Checkpoint(URL, 100, 900, 300, 300, 0, 1L));
+            store.append(new Checkpoint(URL, 100, 900, 500, 450, 1, 2L));
+            store.append(new Checkpoint(URL, 1000, 2000, 1500, 1500, 0, 3L));
+        }
+        String torn = CheckpointStore.encode(new Checkpoint(URL, 100, 900, 700, 700, 0, 4L));
+        Files.write(file, torn.substring(0, torn.length() / 2).getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try (CheckpointStore store = new CheckpointStore(file, 1, 0)) {
+            assertEquals(500, store.latest(URL, 100, 900).getLastProcessedScn());
+            assertEquals(1500, store.latest(URL, 1000, 2000).getLastProcessedScn());
+            assertNull(store.latest(URL, 100, 901));
+        }
+
+        // 打开时已压缩为每个范围一条记录, 损坏的行也被去掉
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+    }
+
+    private static String encodeWithoutNewline(Checkpoint checkpoint) {
+        String line = CheckpointStore.encode(checkpoint);
+        return line.substring(0, line.length() - 1);
+    }
+
+    private static long crc(String record) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(record.getBytes(StandardCharsets.UTF_8));
+        return crc32.getValue();
+    }
+}
@@ -0,0 +1,173 @@
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author zhul
+ */
+public class ContentsProfilerTest {
+
+    private static final int INSERT = 1;
+    private static final int DELETE = 2;
+    private static final int UPDATE = 3;
+
+    @Test
+    public void bucketsAreHalfOpenOnTheLeft() throws SQLException {
+        // (100, 200] 分为 4 个桶, 每个桶 25 个 scn: (100, 125], (125, 150], (150, 175], (175, 200]
+        ContentsProfiler profiler = new ContentsProfiler(100, 200, 4, 10, true);
+        profiler.consume(resultSet(
+                row(99, INSERT, "S", "T", null, 1),
+                row(100, INSERT, "S", "T", null, 2),
+                row(101, INSERT, "S", "T", null, 4),
+                row(125, INSERT, "S", "T", null, 8),
+                row(126, INSERT, "S", "T", null, 16),
+                row(200, INSERT, "S", "T", null, 32),
+                row(201, INSERT, "S", "T", null, 64)
+        ));
+        assertArrayEquals(new long[]{2, 1, 0, 1}, profiler.getBucketRows());
+        assertArrayEquals(new long[]{12, 16, 0, 32}, profiler.getBucketBytes());
+        // 不在桶内的行仍然计入总数
+        assertEquals(7, profiler.getRows());
+        assertEquals(127, profiler.getBytes());
+    }
+
+    @Test
+    public void lastBucketIsShorterWhenRangeIsNotDivisible() throws SQLException {
+        // 10 个 scn 分为 3 个桶, 每个桶 4 个 scn, 最后一个桶只有 2 个
+        ContentsProfiler profiler = new ContentsProfiler(0, 10, 3, 10, false);
+        List<Object[]> rows = new ArrayList<>();
+        for (int scn = 1; scn <= 10; scn++) {
+            rows.add(row(scn, INSERT, "S", "T", null, 0));
+        }
+        profiler.consume(resultSet(rows.toArray(new Object[0][])));
+        assertArrayEquals(new long[]{4, 4, 2}, profiler.getBucketRows());
+    }
+
+    @Test
+    public void bytesAreNotReadByDefault() throws SQLException {
+        ContentsProfiler profiler = new ContentsProfiler(0, 10, 1, 10, false);
+        // 没有第 6 列, 读取时会抛出异常
+        profiler.consume(resultSet(new Object[]{5L, INSERT, "S", "T", null}));
+        assertEquals(1, profiler.getRows());
+        assertEquals(0, profiler.getBytes());
+    }
+
+    @Test
+    public void topTablesAreOrderedAndLimited() throws SQLException {
+        ContentsProfiler profiler = new ContentsProfiler(0, 100, 1, 2, true);
+        profiler.consume(resultSet(
+                row(1, INSERT, "S", "A", null, 1000),
+                row(2, INSERT, "S", "B", null, 1),
+                row(3, UPDATE, "S", "B", null, 1),
+                row(4, DELETE, "S", "C", null, 10),
+                row(5, INSERT, "S", "C", null, 10),
+                row(6, INSERT, "S", "C", null, 10),
+                row(7, INSERT, "OTHER", "C", null, 5000),
+                row(8, INSERT, null, null, null, 7)
+        ));
+        assertEquals(Arrays.asList("S.C", "S.B"), profiler.getTopTables(false));
+        assertEquals(Arrays.asList("OTHER.C", "S.A"), profiler.getTopTables(true));
+    }
+
+    @Test
+    public void tablesWithEqualCountsKeepFirstSeenOrder() throws SQLException {
+        ContentsProfiler profiler = new ContentsProfiler(0, 100, 1, 10, false);
+        profiler.consume(resultSet(
+                row(1, INSERT, "S", "B", null, 0),
+                row(2, INSERT, "S", "A", null, 0),
+                row(3, INSERT, "S", "C", null, 0),
+                row(4, INSERT, "S", "C", null, 0)
+        ));
+        assertEquals(Arrays.asList("S.C", "S.B", "S.A"), profiler.getTopTables(false));
+    }
+
+    @Test
+    public void transactionsAreCountedOnce() throws SQLException {
+        ContentsProfiler profiler = new ContentsProfiler(0, 100, 1, 10, false);
+        profiler.consume(resultSet(
+                row(1, INSERT, "S", "T", xid(1), 0),
+                row(2, INSERT, "S", "T", xid(1), 0),
+                row(3, INSERT, "S", "T", xid(0), 0),
+                row(4, INSERT, "S", "T", xid(-1), 0),
+                row(5, INSERT, "S", "T", new byte[4], 0),
+                row(6, INSERT, "S", "T", null, 0)
+        ));
+        assertEquals(3, profiler.getTransactionCount());
+    }
+
+    @Test
+    public void longHashSetHandlesZeroKey() {
+        ContentsProfiler.LongHashSet set = new ContentsProfiler.LongHashSet();
+        set.add(0);
+        set.add(0);
+        assertEquals(1, set.size());
+        set.add(1);
+        set.add(0);
+        assertEquals(2, set.size());
+    }
+
+    @Test
+    public void longHashSetKeepsKeysAcrossResizes() {
+        ContentsProfiler.LongHashSet set = new ContentsProfiler.LongHashSet();
+        int keys = 100_000;
+        // 步长为 2 的幂的 key 在低位上相同, 检查混合函数和探测在扩容后仍然能找到已有的 key
+        for (int round = 0; round < 2; round++) {
+            for (long i = 0; i < keys; i++) {
+                set.add(i << 32);
+                set.add(-i);
+            }
+            assertEquals(2 * keys - 1, set.size());
+        }
+    }
+
+    private static Object[] row(long scn, int operation, String owner, String table, byte[] xid, long redoBytes) {
+        return new Object[]{scn, operation, owner, table, xid, redoBytes};
+    }
+
+    private static byte[] xid(long value) {
+        byte[] bytes = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            bytes[i] = (byte) value;
+            value >>>= 8;
+        }
+        return bytes;
+    }
+
+    /**
+     * 只实现 {@link ContentsProfiler#consume} 用到的方法, 列下标从 1 开始
+     */
+    private static ResultSet resultSet(Object[]... rows) {
+        int[] cursor = {-1};
+        return (ResultSet) Proxy.newProxyInstance(ContentsProfilerTest.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            return ++cursor[0] < rows.length;
+                        case "getLong":
+                            return ((Number) column(rows[cursor[0]], (Integer) args[0])).longValue();
+                        case "getInt":
+                            return ((Number) column(rows[cursor[0]], (Integer) args[0])).intValue();
+                        case "getString":
+                        case "getBytes":
+                            return column(rows[cursor[0]], (Integer) args[0]);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static Object column(Object[] row, int index) throws SQLException {
+        if (index < 1 || index > row.length) {
+            throw new SQLException("Invalid column index: " + index);
+        }
+        return row[index - 1];
+    }
+}
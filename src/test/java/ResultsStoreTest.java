@@ -0,0 +1,176 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author zhul
+ */
+public class ResultsStoreTest {
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("results-store-test", ".log");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void encodeAndDecodeRoundTrip() {
+        String line = ResultsStore.encode(record("run\t1", 1L, 100, 1000, 800, 3, 64L * 1024 * 1024));
+        assertEquals('\n', line.charAt(line.length() - 1));
+
+        RunRecord decoded = ResultsStore.decode(line.substring(0, line.length() - 1));
+        assertNotNull(decoded);
+        // 字段中的分隔符被替换为空格
+        assertEquals("run 1", decoded.getLabel());
+        assertEquals("target", decoded.getTarget());
+        assertEquals("ONLINE_CATALOG", decoded.getStrategy());
+        assertEquals(1L, decoded.getTimestamp());
+        assertEquals(100, decoded.getStartScn());
+        assertEquals(1000, decoded.getEndScn());
+        assertEquals(800, decoded.getMinedEndScn());
+        assertEquals(CycleResult.Status.OK, decoded.getStatus());
+        assertEquals(3, decoded.getLogFiles());
+        assertEquals(64L * 1024 * 1024, decoded.getLogFileBytes());
+        assertEquals(1000, decoded.getPgaBytes());
+        assertEquals(2000, decoded.getPgaMaxBytes());
+        assertEquals(500_000L, (long) decoded.getPhaseMicros().get(MiningPhase.BUILD_DICTIONARY));
+        assertEquals(1_000_000L, (long) decoded.getPhaseMicros().get(MiningPhase.START_LOGMNR));
+        assertEquals(1_000_000L, (long) decoded.getPhaseMicros().get(MiningPhase.QUERY_CONTENTS));
+    }
+
+    @Test
+    public void tornLineIsRejected() {
+        String line = encodeWithoutNewline(record("a", 1L, 100, 1000, 1000, 3, 1024));
+        for (int length = 0; length < line.length(); length++) {
+            assertNull("prefix of length " + length, ResultsStore.decode(line.substring(0, length)));
+        }
+    }
+
+    @Test
+    public void corruptedFieldIsRejected() {
+        String line = encodeWithoutNewline(record("a", 1L, 100, 1000, 1000, 3, 1024));
+        assertNull(ResultsStore.decode(line.replace("\t1000\t1000\t", "\t1000\t1001\t")));
+        assertNull(ResultsStore.decode(line.replace("start=", "strat=")));
+    }
+
+    @Test
+    public void corruptedCrcIsRejected() {
+        String line = encodeWithoutNewline(record("a", 1L, 100, 1000, 1000, 3, 1024));
+        assertNull(ResultsStore.decode(line + "0"));
+        assertNull(ResultsStore.decode(line.substring(0, line.lastIndexOf('\t') + 1) + "abc"));
+    }
+
+    @Test
+    public void olderVersionIsRejected() {
+        String line = encodeWithoutNewline(record("a", 1L, 100, 1000, 1000, 3, 1024));
+        String record = "v1" + line.substring(2, line.lastIndexOf('\t'));
+        assertNull(ResultsStore.decode(record + "\t" + crc(record)));
+    }
+
+    @Test
+    public void malformedFieldsAreRejected() {
+        String line = encodeWithoutNewline(record("a", 1L, 100, 1000, 1000, 3, 1024));
+        String record = line.substring(0, line.lastIndexOf('\t'));
+        String[] badRecords = {
+                record.replace("\tOK\t", "\tDONE\t"),
+                record.replace("\t1000\t1000\t", "\tabc\t1000\t"),
+                record.replace("start=1000000", "start"),
+                record.substring(0, record.lastIndexOf('\t')),
+        };
+        for (String bad : badRecords) {
+            assertNull(bad, ResultsStore.decode(bad + "\t" + crc(bad)));
+        }
+    }
+
+    @Test
+    public void unknownPhaseIsIgnored() {
+        String line = encodeWithoutNewline(record("a", 1L, 100, 1000, 1000, 3, 1024));
+        String record = line.substring(0, line.lastIndexOf('\t')) + ",removed=5";
+        RunRecord decoded = ResultsStore.decode(record + "\t" + crc(record));
+        assertNotNull(decoded);
+        assertEquals(3, decoded.getPhaseMicros().size());
+    }
+
+    @Test
+    public void loadSkipsTornAndCorruptedLines() throws IOException {
+        StringBuilder content = new StringBuilder();
+        content.append(ResultsStore.encode(record("a", 1L, 100, 1000, 1000, 3, 1024)));
+        String corrupted = ResultsStore.encode(record("a", 2L, 100, 1000, 1000, 3, 1024));
+        content.append(corrupted.replace("\t100\t", "\t101\t"));
+        content.append(ResultsStore.encode(record("b", 3L, 100, 1000, 1000, 3, 1024)));
+        String torn = ResultsStore.encode(record("b", 4L, 100, 1000, 1000, 3, 1024));
+        content.append(torn, 0, torn.length() / 2);
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+
+        List<RunRecord> records = ResultsStore.load(file);
+        assertEquals(2, records.size());
+        assertEquals("a", records.get(0).getLabel());
+        assertEquals("b", records.get(1).getLabel());
+    }
+
+    @Test
+    public void trimmedRunsAreSeparateScenarios() {
+        RunRecord untrimmed = record("a", 1L, 100, 1000, 1000, 4, 1024);
+        RunRecord trimmed = record("a", 2L, 100, 1000, 600, 2, 512);
+        assertNotEquals(untrimmed.getScenario(), trimmed.getScenario());
+        assertEquals(untrimmed.getScenario(), record("b", 3L, 5000, 5900, 5900, 4, 2048).getScenario());
+    }
+
+    @Test
+    public void runsAgainstDifferentTargetsAreSeparateScenarios() {
+        RunRecord record = record("a", 1L, 100, 1000, 1000, 4, 1024);
+        RunRecord otherTarget = new RunRecord("run", "a", "other", "ONLINE_CATALOG", 1L, 100, 1000, 1000,
+                CycleResult.Status.OK, 4, 1024, 1000, 2000, record.getPhaseMicros());
+        assertNotEquals(record.getScenario(), otherTarget.getScenario());
+    }
+
+    @Test
+    public void megabytesPerSecondExcludesDictionaryBuild() {
+        // 64 MB, 不含构建字典的耗时 2 秒
+        assertEquals(32, record("a", 1L, 100, 1000, 1000, 3, 64L * 1024 * 1024).getMegabytesPerSecond(), 1e-9);
+        assertTrue(record("a", 1L, 100, 1000, 1000, 3, -1).getMegabytesPerSecond() < 0);
+    }
+
+    private static RunRecord record(String label, long timestamp, long startScn, long endScn, long minedEndScn,
+                                    int logFiles, long logFileBytes) {
+        Map<MiningPhase, Long> phaseMicros = new EnumMap<>(MiningPhase.class);
+        phaseMicros.put(MiningPhase.BUILD_DICTIONARY, 500_000L);
+        phaseMicros.put(MiningPhase.START_LOGMNR, 1_000_000L);
+        phaseMicros.put(MiningPhase.QUERY_CONTENTS, 1_000_000L);
+        return new RunRecord("run", label, "target", "ONLINE_CATALOG", timestamp, startScn, endScn, minedEndScn,
+                CycleResult.Status.OK, logFiles, logFileBytes, 1000, 2000, phaseMicros);
+    }
+
+    private static String encodeWithoutNewline(RunRecord record) {
+        String line = ResultsStore.encode(record);
+        return line.substring(0, line.length() - 1);
+    }
+
+    private static long crc(String record) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(record.getBytes(StandardCharsets.UTF_8));
+        return crc32.getValue();
+    }
+}
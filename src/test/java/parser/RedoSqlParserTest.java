@@ -0,0 +1,180 @@
+package parser;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author zhul
+ */
+public class RedoSqlParserTest {
+
+    private RedoSqlParser parser;
+
+    @Before
+    public void setUp() {
+        parser = new RedoSqlParser(16);
+    }
+
+    @Test
+    public void parseInsert() {
+        ChangeEvent event = parse("insert into \"HR\".\"EMP\"(\"ID\",\"NAME\",\"SALARY\") values ('1','Tom',-12.5);");
+        assertEquals(ChangeEvent.Operation.INSERT, event.getOperation());
+        assertEquals("HR", event.getSchema());
+        assertEquals("EMP", event.getTable());
+        assertEquals(100L, event.getScn());
+        assertEquals("xid", event.getXid());
+        assertTrue(event.getBefore().isEmpty());
+        assertEquals(Arrays.asList("ID", "NAME", "SALARY"), new ArrayList<>(event.getAfter().keySet()));
+        assertEquals("1", event.getAfter().get("ID"));
+        assertEquals("Tom", event.getAfter().get("NAME"));
+        assertEquals("-12.5", event.getAfter().get("SALARY"));
+    }
+
+    @Test
+    public void quotesAreUnescaped() {
+        ChangeEvent event = parse("insert into \"S\".\"T\"(\"A\",\"B\",\"C\") values ('it''s','''','a,b)c');");
+        assertEquals("it's", event.getAfter().get("A"));
+        assertEquals("'", event.getAfter().get("B"));
+        assertEquals("a,b)c", event.getAfter().get("C"));
+    }
+
+    @Test
+    public void emptyStringIsNotNull() {
+        ChangeEvent event = parse("insert into \"S\".\"T\"(\"A\",\"B\") values ('',NULL);");
+        assertEquals("", event.getAfter().get("A"));
+        assertTrue(event.getAfter().containsKey("B"));
+        assertNull(event.getAfter().get("B"));
+    }
+
+    @Test
+    public void functionCallsAreKeptVerbatim() {
+        ChangeEvent event = parse("insert into \"S\".\"T\"(\"D\",\"R\",\"L\") values "
+                + "(TO_DATE('2021-01-02 03:04:05', 'YYYY-MM-DD HH24:MI:SS'),HEXTORAW('0a'),EMPTY_CLOB());");
+        assertEquals("TO_DATE('2021-01-02 03:04:05', 'YYYY-MM-DD HH24:MI:SS')", event.getAfter().get("D"));
+        assertEquals("HEXTORAW('0a')", event.getAfter().get("R"));
+        assertEquals("EMPTY_CLOB()", event.getAfter().get("L"));
+    }
+
+    @Test
+    public void functionArgumentWithParenthesisInString() {
+        ChangeEvent event = parse("update \"S\".\"T\" set \"D\" = TO_DATE('(x)', 'YYYY') where \"ID\" = '1';");
+        assertEquals("TO_DATE('(x)', 'YYYY')", event.getAfter().get("D"));
+        assertEquals("1", event.getBefore().get("ID"));
+    }
+
+    @Test
+    public void parseUpdateWithIsNull() {
+        ChangeEvent event = parse("update \"S\".\"T\" set \"A\" = 'b', \"B\" = NULL where \"A\" = 'a' and \"B\" IS NULL and ROWID = 'AAAx';");
+        assertEquals(ChangeEvent.Operation.UPDATE, event.getOperation());
+        assertEquals("b", event.getAfter().get("A"));
+        assertTrue(event.getAfter().containsKey("B"));
+        assertNull(event.getAfter().get("B"));
+        assertEquals("a", event.getBefore().get("A"));
+        assertTrue(event.getBefore().containsKey("B"));
+        assertNull(event.getBefore().get("B"));
+        // 不带引号的 ROWID 是伪列, 不属于变更前的列值
+        assertEquals(2, event.getBefore().size());
+    }
+
+    @Test
+    public void parseDelete() {
+        ChangeEvent event = parse("delete from \"S\".\"T\" where \"A\" = 'x' and \"B\" is null;");
+        assertEquals(ChangeEvent.Operation.DELETE, event.getOperation());
+        assertTrue(event.getAfter().isEmpty());
+        assertEquals("x", event.getBefore().get("A"));
+        assertNull(event.getBefore().get("B"));
+        assertEquals(2, event.getBefore().size());
+    }
+
+    @Test
+    public void quotedColumnNamedRowidIsKept() {
+        ChangeEvent event = parse("delete from \"S\".\"T\" where \"ROWID\" = '1';");
+        assertEquals("1", event.getBefore().get("ROWID"));
+    }
+
+    @Test
+    public void moreValuesThanColumnsFails() {
+        assertNull(parser.parse("insert into \"S\".\"T\"(\"A\",\"B\") values ('1','2','3');", 1, "x"));
+        assertEquals(1, parser.getFailed());
+    }
+
+    @Test
+    public void fewerValuesThanColumnsFails() {
+        assertNull(parser.parse("insert into \"S\".\"T\"(\"A\",\"B\",\"C\") values ('1','2');", 1, "x"));
+        assertEquals(1, parser.getFailed());
+    }
+
+    @Test
+    public void unterminatedStringFails() {
+        assertNull(parser.parse("insert into \"S\".\"T\"(\"A\") values ('abc);", 1, "x"));
+        assertNull(parser.parse("update \"S\".\"T\" set \"A\" = TO_DATE('x' where \"B\" = '1';", 1, "x"));
+        assertEquals(2, parser.getFailed());
+    }
+
+    @Test
+    public void otherStatementsAreIgnored() {
+        assertNull(parser.parse("commit;", 1, "x"));
+        assertNull(parser.parse("set transaction read write;", 1, "x"));
+        assertNull(parser.parse(null, 1, "x"));
+        assertEquals(0, parser.getFailed());
+        assertEquals(0, parser.getParsed());
+    }
+
+    @Test
+    public void columnListIsCachedPerTable() {
+        parse("insert into \"S\".\"T\"(\"A\",\"B\") values ('1','2');");
+        ChangeEvent second = parse("insert into \"S\".\"T\"(\"A\",\"B\") values ('3','4');");
+        assertEquals("3", second.getAfter().get("A"));
+        assertEquals("4", second.getAfter().get("B"));
+        assertEquals(1, parser.getLayoutMisses());
+        assertEquals(1, parser.getLayoutHits());
+
+        // 列清单变化 (例如 DDL 之后) 时重新解析
+        ChangeEvent changed = parse("insert into \"S\".\"T\"(\"A\",\"B\",\"C\") values ('5','6','7');");
+        assertEquals(Arrays.asList("A", "B", "C"), new ArrayList<>(changed.getAfter().keySet()));
+        assertEquals(2, parser.getLayoutMisses());
+
+        // 缓存的列清单是新列清单的前缀时不能误用
+        ChangeEvent prefix = parse("insert into \"S\".\"T\"(\"A\",\"B\") values ('8','9');");
+        assertEquals(Arrays.asList("A", "B"), new ArrayList<>(prefix.getAfter().keySet()));
+    }
+
+    @Test
+    public void tablesWithSameLayoutDoNotShareSchema() {
+        parse("insert into \"S1\".\"T\"(\"A\") values ('1');");
+        ChangeEvent event = parse("insert into \"S2\".\"T\"(\"A\") values ('2');");
+        assertEquals("S2", event.getSchema());
+        assertEquals("T", event.getTable());
+    }
+
+    @Test
+    public void quotedColumnWithComma() {
+        ChangeEvent event = parse("insert into \"S\".\"T\"(\"A,B\",\"C\") values ('1','2');");
+        assertEquals("1", event.getAfter().get("A,B"));
+        assertEquals("2", event.getAfter().get("C"));
+    }
+
+    @Test
+    public void parserWithoutCache() {
+        RedoSqlParser uncached = new RedoSqlParser(0);
+        for (int i = 0; i < 2; i++) {
+            ChangeEvent event = uncached.parse("insert into \"S\".\"T\"(\"A\") values ('" + i + "');", i, "x");
+            assertNotNull(event);
+            assertEquals(String.valueOf(i), event.getAfter().get("A"));
+        }
+    }
+
+    private ChangeEvent parse(String sql) {
+        ChangeEvent event = parser.parse(sql, 100L, "xid");
+        assertNotNull("failed to parse: " + sql, event);
+        return event;
+    }
+}
@@ -0,0 +1,95 @@
+package sink;
+
+import org.junit.Test;
+import parser.ChangeEvent;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author zhul
+ */
+public class AsyncBatchingSinkTest {
+
+    @Test
+    public void partialBatchIsDeliveredAfterLingerWithoutFlush() throws Exception {
+        RecordingSink delegate = new RecordingSink();
+        try (AsyncBatchingSink sink = new AsyncBatchingSink(delegate, 100, 20, 1000)) {
+            sink.accept(event(1));
+            sink.accept(event(2));
+            // 事件流停顿, 没有下一个 accept 或 flush
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (sink.getDelivered() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(2, sink.getDelivered());
+            assertEquals(1, delegate.batchSizes().size());
+        }
+    }
+
+    @Test
+    public void eventsKeepOrderWhenLingerBatchesInterleave() throws Exception {
+        RecordingSink delegate = new RecordingSink();
+        int events = 20_000;
+        // 队列只能放 1 批, linger 很短, 后台线程入队的未满批次与调用线程入队的批次交错
+        try (AsyncBatchingSink sink = new AsyncBatchingSink(delegate, 7, 1, 7)) {
+            for (int i = 0; i < events; i++) {
+                sink.accept(event(i));
+                if (i % 1000 == 0) {
+                    Thread.sleep(2);
+                }
+            }
+            sink.flush();
+            assertEquals(events, sink.getDelivered());
+        }
+        List<Long> scns = delegate.scns();
+        assertEquals(events, scns.size());
+        for (int i = 0; i < events; i++) {
+            assertEquals(i, (long) scns.get(i));
+        }
+        for (int size : delegate.batchSizes()) {
+            assertTrue(size > 0 && size <= 7);
+        }
+    }
+
+    private static ChangeEvent event(long scn) {
+        return new ChangeEvent(ChangeEvent.Operation.INSERT, scn, null, "S", "T",
+                Collections.<String, String>emptyMap(), Collections.<String, String>emptyMap());
+    }
+
+    private static class RecordingSink implements EventSink {
+
+        private final List<Integer> batchSizes = new ArrayList<>();
+        private final List<Long> scns = new ArrayList<>();
+
+        @Override
+        public synchronized void accept(List<ChangeEvent> events) {
+            batchSizes.add(events.size());
+            for (ChangeEvent event : events) {
+                scns.add(event.getScn());
+            }
+        }
+
+        synchronized List<Integer> batchSizes() {
+            return new ArrayList<>(batchSizes);
+        }
+
+        synchronized List<Long> scns() {
+            return new ArrayList<>(scns);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
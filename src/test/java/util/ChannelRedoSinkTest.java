@@ -0,0 +1,70 @@
+package util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author zhul
+ */
+public class ChannelRedoSinkTest {
+
+    private static final String EMOJI = "\uD83D\uDE00";
+
+    @Test
+    public void surrogatePairSplitAcrossChunksIsKept() throws IOException {
+        String statement = "insert into \"T\" values ('" + EMOJI + "')";
+        int split = statement.indexOf(EMOJI) + 1;
+        // 缓冲区很小, 覆盖编码过程中的 overflow
+        assertEquals(statement + "\n", write(4, false, statement.substring(0, split), statement.substring(split)));
+    }
+
+    @Test
+    public void chunkOfASingleSurrogate() throws IOException {
+        assertEquals("a" + EMOJI + "b\n", write(16, false, "a", EMOJI.substring(0, 1), EMOJI.substring(1), "b"));
+    }
+
+    @Test
+    public void truncatedStatementDropsUnpairedSurrogate() throws IOException {
+        assertEquals("a\nb\n", writeStatements(16, "a" + EMOJI.charAt(0), "b"));
+    }
+
+    @Test(expected = CharacterCodingException.class)
+    public void unpairedSurrogateAtEndIsRejected() throws IOException {
+        write(16, false, "a" + EMOJI.charAt(0));
+    }
+
+    private static String write(int bufferSize, boolean truncated, String... chunks) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ChannelRedoSink sink = new ChannelRedoSink(Channels.newChannel(out), bufferSize);
+        sink.begin();
+        for (String chunk : chunks) {
+            sink.append(chunk);
+        }
+        sink.end(truncated);
+        sink.flush();
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 第一条语句被截断, 第二条完整
+     */
+    private static String writeStatements(int bufferSize, String truncated, String complete) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ChannelRedoSink sink = new ChannelRedoSink(Channels.newChannel(out), bufferSize);
+        sink.begin();
+        sink.append(truncated);
+        sink.end(true);
+        sink.begin();
+        sink.append(complete);
+        sink.end(false);
+        sink.flush();
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
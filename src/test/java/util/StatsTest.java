@@ -0,0 +1,108 @@
+package util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author zhul
+ */
+public class StatsTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void meanAndSampleVariance() {
+        double[] values = {2, 4, 4, 4, 5, 5, 7, 9};
+        assertEquals(5, Stats.mean(values), DELTA);
+        assertEquals(32.0 / 7, Stats.variance(values), DELTA);
+    }
+
+    @Test
+    public void logGamma() {
+        assertEquals(Math.log(24), Stats.logGamma(5), 1e-12);
+        assertEquals(Math.log(Math.sqrt(Math.PI)), Stats.logGamma(0.5), 1e-12);
+        // 反射公式: Gamma(x) * Gamma(1 - x) = pi / sin(pi * x), 覆盖 x < 0.5 的分支
+        assertEquals(Math.log(Math.PI / Math.sin(Math.PI * 0.25)), Stats.logGamma(0.25) + Stats.logGamma(0.75), 1e-12);
+    }
+
+    @Test
+    public void regularizedIncompleteBetaClosedForms() {
+        for (double x = 0.05; x < 1; x += 0.1) {
+            // I_x(1, 1) = x, I_x(a, 1) = x^a, I_x(1, b) = 1 - (1 - x)^b
+            assertEquals(x, Stats.regularizedIncompleteBeta(x, 1, 1), DELTA);
+            assertEquals(Math.pow(x, 3.5), Stats.regularizedIncompleteBeta(x, 3.5, 1), DELTA);
+            assertEquals(1 - Math.pow(1 - x, 2.5), Stats.regularizedIncompleteBeta(x, 1, 2.5), DELTA);
+        }
+        assertEquals(0, Stats.regularizedIncompleteBeta(0, 2, 3), 0);
+        assertEquals(1, Stats.regularizedIncompleteBeta(1, 2, 3), 0);
+    }
+
+    @Test
+    public void studentTCdfClosedForms() {
+        for (double t = -5; t <= 5; t += 0.5) {
+            // 1 个自由度为 Cauchy 分布, 2 个自由度有初等函数形式
+            assertEquals(0.5 + Math.atan(t) / Math.PI, Stats.studentTCdf(t, 1), DELTA);
+            assertEquals(0.5 + t / (2 * Math.sqrt(2 + t * t)), Stats.studentTCdf(t, 2), DELTA);
+        }
+    }
+
+    @Test
+    public void studentTCdfCriticalValues() {
+        assertEquals(0.5, Stats.studentTCdf(0, 7.3), DELTA);
+        assertEquals(0.95, Stats.studentTCdf(2.015048372669157, 5), 1e-8);
+        assertEquals(0.975, Stats.studentTCdf(2.228138851986274, 10), 1e-8);
+        assertEquals(0.025, Stats.studentTCdf(-2.228138851986274, 10), 1e-8);
+        // 自由度很大时接近标准正态分布
+        assertEquals(0.975, Stats.studentTCdf(1.959963984540054, 1e7), 1e-6);
+    }
+
+    @Test
+    public void welchPValue() {
+        // 两组方差都为 2, 均值差 1: t = 1/sqrt(2), df = 2
+        double[] baseline = {0, 2};
+        double[] candidate = {1, 3};
+        double p = 0.5 - 1 / (2 * Math.sqrt(5));
+        assertEquals(p, Stats.welchGreaterPValue(baseline, candidate), DELTA);
+        assertEquals(1 - p, Stats.welchGreaterPValue(candidate, baseline), DELTA);
+    }
+
+    @Test
+    public void welchPValueOfIdenticalGroups() {
+        double[] values = {10.1, 9.8, 10.3, 10.0, 9.9};
+        assertEquals(0.5, Stats.welchGreaterPValue(values, values.clone()), DELTA);
+    }
+
+    @Test
+    public void welchPValueOfSeparatedGroups() {
+        double[] baseline = {10.1, 9.8, 10.3, 10.0, 9.9, 10.2};
+        double[] candidate = {12.6, 12.4, 12.9, 12.5, 12.8};
+        assertEquals(0, Stats.welchGreaterPValue(baseline, candidate), 1e-6);
+        assertEquals(1, Stats.welchGreaterPValue(candidate, baseline), 1e-6);
+    }
+
+    @Test
+    public void welchPValueWithoutVariance() {
+        double[] low = {1, 1, 1};
+        double[] high = {2, 2};
+        assertEquals(0, Stats.welchGreaterPValue(low, high), 0);
+        assertEquals(1, Stats.welchGreaterPValue(high, low), 0);
+        assertEquals(1, Stats.welchGreaterPValue(low, low.clone()), 0);
+    }
+
+    @Test
+    public void holmAdjustment() {
+        // 排序后 0.01 * 4, 0.02 * 3, 0.03 * 2 保持单调, 0.04 * 1 被提升到 0.06
+        double[] adjusted = Stats.holmAdjust(new double[]{0.03, 0.01, 0.04, 0.02});
+        assertArrayEquals(new double[]{0.06, 0.04, 0.06, 0.06}, adjusted, DELTA);
+        assertArrayEquals(new double[]{1, 1}, Stats.holmAdjust(new double[]{0.6, 0.9}), DELTA);
+        assertArrayEquals(new double[]{0.2}, Stats.holmAdjust(new double[]{0.2}), DELTA);
+        assertEquals(0, Stats.holmAdjust(new double[0]).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void welchNeedsTwoSamples() {
+        Stats.welchGreaterPValue(new double[]{1}, new double[]{1, 2});
+    }
+}